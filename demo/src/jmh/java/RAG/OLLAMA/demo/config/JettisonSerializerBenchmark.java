@@ -0,0 +1,74 @@
+package RAG.OLLAMA.demo.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation d'une réponse Jira volumineuse (issues avec champs imbriqués) par l'ObjectMapper
+ * de l'application
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JettisonSerializerBenchmark {
+
+    @Param({"500"})
+    public int issueCount;
+
+    private ObjectMapper objectMapper;
+    private JSONObject payload;
+
+    @Setup
+    public void setUp() throws JSONException {
+        objectMapper = new JacksonConfig().objectMapper(new Jackson2ObjectMapperBuilder());
+
+        JSONObject issues = new JSONObject();
+        for (int i = 1; i <= issueCount; i++) {
+            JSONObject status = new JSONObject();
+            status.put("id", (long) (i % 5));
+            status.put("name", i % 2 == 0 ? "Open" : "Resolved");
+
+            JSONObject fields = new JSONObject();
+            fields.put("summary", "Issue " + i + " summary with enough text to look like a real ticket title");
+            fields.put("description", "Steps to reproduce:\n1. Upload a PDF\n2. Ask a question about version 10000\n"
+                    + "Expected: an answer built from the document. Actual: timeout after 30s.");
+            fields.put("status", status);
+            fields.put("votes", i % 7);
+            fields.put("resolved", i % 2 != 0);
+            fields.put("environment", JSONObject.NULL);
+
+            JSONObject issue = new JSONObject();
+            issue.put("key", "AIAG-" + i);
+            issue.put("id", 10000L + i);
+            issue.put("fields", fields);
+            issues.put("AIAG-" + i, issue);
+        }
+        payload = new JSONObject();
+        payload.put("total", issueCount);
+        payload.put("issues", issues);
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(payload);
+    }
+}
@@ -0,0 +1,163 @@
+package RAG.OLLAMA.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Données générées avec une graine fixe, pour des mesures reproductibles d'un run à l'autre
+ */
+final class BenchmarkData {
+
+    private static final String[] COMMON_WORDS = {
+            "the", "system", "shall", "report", "version", "release", "ticket", "configuration", "module",
+            "interface", "error", "timeout", "database", "request", "response", "user", "upload", "document",
+            "parser", "index", "vector", "latency", "throughput", "requirement", "test", "validation", "status",
+            "résumé", "données", "exigence", "spécification", "fonction", "qualité", "livraison"};
+
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "tel", "san", "vo", "lux", "pre", "dis", "con", "ver", "ta", "ne", "gri", "pho", "stra"};
+
+    // Vocabulaire assez large pour que deux chunks différents partagent peu de tokens
+    private static final String[] WORDS = vocabulary(3000, 7);
+
+    private static final String[] ISSUE_TYPES = {"Bug", "Task", "Story", "Improvement"};
+    private static final String[] STATUSES = {"Open", "In Progress", "Resolved", "Closed"};
+
+    private BenchmarkData() {
+    }
+
+    private static String[] vocabulary(int size, long seed) {
+        Random random = new Random(seed);
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            if (i < COMMON_WORDS.length) {
+                words[i] = COMMON_WORDS[i];
+                continue;
+            }
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int syllable = 0; syllable < syllables; syllable++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            // Mots courants plus fréquents, comme dans un vrai texte
+            sentence.append(random.nextBoolean()
+                    ? COMMON_WORDS[random.nextInt(COMMON_WORDS.length)]
+                    : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * PDF de spécification : paragraphes et tableaux en colonnes, comme les documents envoyés
+     */
+    static PDDocument specificationPdf(int pages, long seed) throws IOException {
+        Random random = new Random(seed);
+        PDDocument document = new PDDocument();
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        for (int pageIndex = 0; pageIndex < pages; pageIndex++) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(font, 9);
+                content.newLineAtOffset(50, 800);
+                for (int line = 0; line < 60; line++) {
+                    if (line % 15 < 10) {
+                        content.showText(sentence(random, 14));
+                        content.newLineAtOffset(0, -12);
+                    } else {
+                        // Ligne de tableau : colonnes espacées, source des blancs de mise en page
+                        for (int column = 0; column < 4; column++) {
+                            content.showText(WORDS[random.nextInt(WORDS.length)]);
+                            content.newLineAtOffset(120, 0);
+                        }
+                        content.newLineAtOffset(-480, -12);
+                    }
+                }
+                content.endText();
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Chunks tels que rendus par la recherche : tickets, commentaires, issues et pages de PDF,
+     * avec quelques quasi-doublons
+     */
+    static List<Document> retrievedDocuments(int count, long seed) {
+        Random random = new Random(seed);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            String text;
+            switch (i % 4) {
+                case 0 -> {
+                    metadata.put("source", "jira_ticket");
+                    metadata.put("ticket_key", "AIAG-" + i);
+                    text = "Issue AIAG-" + i + ":\nSummary: " + sentence(random, 10) + "\nDescription: "
+                            + sentence(random, 80);
+                }
+                case 1 -> {
+                    metadata.put("source", "jira_comment");
+                    metadata.put("ticket_key", "AIAG-" + (i - 1));
+                    metadata.put("author", "user" + random.nextInt(10));
+                    text = "Comment on issue AIAG-" + (i - 1) + ":\n" + sentence(random, 60);
+                }
+                case 2 -> {
+                    metadata.put("source", "jira_issue");
+                    metadata.put("issue_key", "AIAG-" + i);
+                    metadata.put("version_id", "10000");
+                    text = "Issue AIAG-" + i + " in version 10000:\nSummary: " + sentence(random, 12);
+                }
+                default -> {
+                    metadata.put("source", "uploaded-pdf");
+                    metadata.put("page_number", i);
+                    text = sentence(random, 150).replace(" the ", "      the      ");
+                }
+            }
+            documents.add(Document.builder()
+                    .id("doc-" + i)
+                    .text(i % 10 == 9 ? documents.get(i - 1).getText() : text)
+                    .metadata(metadata)
+                    .score(1.0 / (i + 1))
+                    .build());
+        }
+        return documents;
+    }
+
+    record IssueFields(String key, String summary, String type, String status) {
+    }
+
+    static List<IssueFields> versionIssues(int count, long seed) {
+        Random random = new Random(seed);
+        List<IssueFields> issues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            issues.add(new IssueFields("AIAG-" + (i + 1), sentence(random, 8),
+                    ISSUE_TYPES[random.nextInt(ISSUE_TYPES.length)], STATUSES[random.nextInt(STATUSES.length)]));
+        }
+        return issues;
+    }
+}
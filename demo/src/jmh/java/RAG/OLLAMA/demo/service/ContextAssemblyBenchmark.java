@@ -0,0 +1,55 @@
+package RAG.OLLAMA.demo.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Texte des documents retrouvés (extractDocumentText) et assemblage du contexte du prompt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextAssemblyBenchmark {
+
+    @Param({"4", "20"})
+    public int documentCount;
+
+    private List<Document> documents;
+    private ContextAssembler contextAssembler;
+
+    @Setup
+    public void setUp() {
+        documents = BenchmarkData.retrievedDocuments(documentCount, 42);
+        contextAssembler = new ContextAssembler(2000, 64, 0.9);
+    }
+
+    @Benchmark
+    public String extractAndJoin() {
+        // Contexte sans budget, pour comparaison
+        return documents.stream()
+                .map(JiraPromptHandler::extractDocumentText)
+                .collect(Collectors.joining("\n\n"));
+    }
+
+    @Benchmark
+    public String assemble() {
+        return contextAssembler.assemble(documents, JiraPromptHandler::extractDocumentText);
+    }
+}
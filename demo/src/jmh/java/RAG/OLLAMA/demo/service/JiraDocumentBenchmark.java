@@ -0,0 +1,47 @@
+package RAG.OLLAMA.demo.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction des documents d'une version Jira (texte, métadonnées, identifiant stable, empreinte)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JiraDocumentBenchmark {
+
+    @Param({"500"})
+    public int issueCount;
+
+    private List<BenchmarkData.IssueFields> issues;
+
+    @Setup
+    public void setUp() {
+        issues = BenchmarkData.versionIssues(issueCount, 42);
+    }
+
+    @Benchmark
+    public void buildVersionDocuments(Blackhole blackhole) {
+        for (BenchmarkData.IssueFields issue : issues) {
+            blackhole.consume(JiraIndexer.versionIssueDocument(
+                    "10000", issue.key(), issue.summary(), issue.type(), issue.status()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package RAG.OLLAMA.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction du texte d'une page (même extracteur que PdfIngestionPipeline) et découpage
+ * du texte extrait par TokenTextSplitter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfTextBenchmark {
+
+    private PDDocument pdf;
+    private List<String> pageTexts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pdf = BenchmarkData.specificationPdf(8, 42);
+        pageTexts = new ArrayList<>();
+        for (int i = 0; i < pdf.getNumberOfPages(); i++) {
+            pageTexts.add(PdfIngestionPipeline.extractText(pdf.getPage(i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pdf.close();
+    }
+
+    @Benchmark
+    public String parsePage() throws IOException {
+        return PdfIngestionPipeline.extractText(pdf.getPage(0));
+    }
+
+    @Benchmark
+    public int splitPages() {
+        // Un splitter par lot de pages, comme un extracteur du pipeline
+        TokenTextSplitter splitter = new TokenTextSplitter();
+        int chunks = 0;
+        for (String text : pageTexts) {
+            chunks += splitter.split(new Document(text, Map.of("document_id", "benchmark"))).size();
+        }
+        return chunks;
+    }
+
+    @Benchmark
+    public int splitCompactedPages() {
+        TokenTextSplitter splitter = new TokenTextSplitter();
+        int chunks = 0;
+        for (String text : pageTexts) {
+            chunks += splitter.split(new Document(ContextAssembler.compact(text), Map.of())).size();
+        }
+        return chunks;
+    }
+}
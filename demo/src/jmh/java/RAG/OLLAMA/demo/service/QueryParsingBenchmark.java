@@ -0,0 +1,81 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyse d'une question : extracteurs regex, réponse du LLM de détection, requête plein
+ * texte et classification locale (avec un modèle d'embedding factice)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryParsingBenchmark {
+
+    private static final String QUESTION =
+            "Quels sont les bugs ouverts de la version 10000 liés à AIAG-3 et AIAG-17, et qui les a commentés ?";
+
+    private static final String DETECTION_RESPONSE = """
+            BEGIN
+            JIRA required
+            VERSIONS: [10000, 10001]
+            JIRA_TICKETS: [AIAG-3, AIAG-17, AIAG-42]
+            END
+            """;
+
+    private JiraIntentClassifier classifier;
+    private InteractionRouter router;
+    private float[] questionEmbedding;
+
+    @Setup
+    public void setUp() {
+        PipelineMetrics metrics = new PipelineMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        classifier = new JiraIntentClassifier(new StubEmbeddingModel(), metrics, 0.6, 0.05, Duration.ofSeconds(30));
+        classifier.updateProjectKeys(List.of("AIAG", "PDF", "RAG"));
+        classifier.updateVersionNames(List.of("10000", "10001", "2.1.0", "Sprint 12"));
+        router = new InteractionRouter(classifier, metrics);
+        questionEmbedding = StubEmbeddingModel.vector(QUESTION);
+        // Embeddings des exemples calculés une fois, comme après la première question
+        classifier.classify(QUESTION, questionEmbedding);
+    }
+
+    @Benchmark
+    public void extractIdentifiers(Blackhole blackhole) {
+        blackhole.consume(JiraPromptHandler.extractVersionsFromQuestion(QUESTION));
+        blackhole.consume(router.ticketKeys(QUESTION));
+    }
+
+    @Benchmark
+    public void extractDetectionValues(Blackhole blackhole) {
+        blackhole.consume(JiraPromptHandler.extractValues(DETECTION_RESPONSE, "VERSIONS:"));
+        blackhole.consume(JiraPromptHandler.extractValues(DETECTION_RESPONSE, "JIRA_TICKETS:"));
+    }
+
+    @Benchmark
+    public String toTsQuery() {
+        return HybridRetriever.toTsQuery(QUESTION);
+    }
+
+    @Benchmark
+    public JiraIntentClassifier.Intent classify() {
+        return classifier.classify(QUESTION, questionEmbedding);
+    }
+}
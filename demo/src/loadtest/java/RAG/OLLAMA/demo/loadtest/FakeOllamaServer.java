@@ -0,0 +1,230 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serveur HTTP imitant l'API Ollama (/api/chat, avec ou sans streaming NDJSON, et /api/embed).
+ * Latence avant le premier token, débit de génération et latence des embeddings sont
+ * configurables ; les vecteurs sont déterministes (sac de mots haché).
+ */
+final class FakeOllamaServer implements AutoCloseable {
+
+    private static final String DETECTION_MARKER = "JIRA required";
+    private static final String QUESTION_MARKER = "The question is: ";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final Duration firstTokenLatency;
+    private final double tokensPerSecond;
+    private final int answerTokens;
+    private final Duration embedLatency;
+    private final int dimensions;
+
+    FakeOllamaServer(Duration firstTokenLatency, double tokensPerSecond, int answerTokens,
+                     Duration embedLatency, int dimensions) throws IOException {
+        this.firstTokenLatency = firstTokenLatency;
+        this.tokensPerSecond = tokensPerSecond;
+        this.answerTokens = answerTokens;
+        this.embedLatency = embedLatency;
+        this.dimensions = dimensions;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/api/chat", this::chat);
+        this.server.createContext("/api/embed", this::embed);
+        this.server.createContext("/api/tags", this::tags);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            server.stop(0);
+        }
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String model = request.path("model").asText();
+            String prompt = lastUserMessage(request);
+            String[] tokens = answer(prompt).split("(?<= )");
+            int promptTokens = prompt.split("\\s+").length;
+
+            sleep(firstTokenLatency);
+            long generationStart = System.nanoTime();
+
+            if (!request.path("stream").asBoolean(false)) {
+                sleep(generationTime(tokens.length));
+                ObjectNode response = chunk(model, String.join("", tokens), true);
+                usage(response, promptTokens, tokens.length, System.nanoTime() - generationStart);
+                respond(exchange, 200, objectMapper.writeValueAsString(response));
+                return;
+            }
+
+            // Streaming : une ligne JSON par token, au débit configuré
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            Duration perToken = generationTime(1);
+            for (String token : tokens) {
+                sleep(perToken);
+                body.write(objectMapper.writeValueAsBytes(chunk(model, token, false)));
+                body.write('\n');
+                body.flush();
+            }
+            ObjectNode done = chunk(model, "", true);
+            usage(done, promptTokens, tokens.length, System.nanoTime() - generationStart);
+            body.write(objectMapper.writeValueAsBytes(done));
+            body.write('\n');
+        }
+    }
+
+    private void tags(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange, 200, "{\"models\":[]}");
+        }
+    }
+
+    private void embed(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode input = request.path("input");
+
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("model", request.path("model").asText());
+            ArrayNode embeddings = response.putArray("embeddings");
+            if (input.isArray()) {
+                input.forEach(text -> addVector(embeddings, text.asText()));
+            } else {
+                addVector(embeddings, input.asText());
+            }
+            // Latence par texte, comme un lot envoyé au modèle d'embedding
+            sleep(embedLatency.multipliedBy(Math.max(1, embeddings.size())));
+            respond(exchange, 200, objectMapper.writeValueAsString(response));
+        }
+    }
+
+    private String lastUserMessage(JsonNode request) {
+        String content = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                content = message.path("content").asText();
+            }
+        }
+        return content;
+    }
+
+    private String answer(String prompt) {
+        // Détection Jira : réponse au format attendu par JiraPromptHandler
+        if (prompt.contains(DETECTION_MARKER)) {
+            int questionStart = prompt.lastIndexOf(QUESTION_MARKER);
+            String question = questionStart < 0 ? prompt : prompt.substring(questionStart + QUESTION_MARKER.length());
+            String normalized = question.toLowerCase(Locale.ROOT);
+            return normalized.contains("jira") || normalized.contains("ticket")
+                    ? "BEGIN\nJIRA required\nVERSIONS: [10000]\nJIRA_TICKETS: []\nEND"
+                    : "jira not required";
+        }
+        StringBuilder answer = new StringBuilder();
+        for (int i = 0; i < answerTokens; i++) {
+            answer.append("token").append(i % 50).append(i % 12 == 11 ? ". " : " ");
+        }
+        return answer.toString();
+    }
+
+    private ObjectNode chunk(String model, String content, boolean done) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        ObjectNode message = chunk.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        chunk.put("done", done);
+        if (done) {
+            chunk.put("done_reason", "stop");
+        }
+        return chunk;
+    }
+
+    private void usage(ObjectNode response, int promptTokens, int completionTokens, long evalNanos) {
+        long promptNanos = firstTokenLatency.toNanos();
+        response.put("total_duration", promptNanos + evalNanos);
+        response.put("load_duration", 0);
+        response.put("prompt_eval_count", promptTokens);
+        response.put("prompt_eval_duration", promptNanos);
+        response.put("eval_count", completionTokens);
+        response.put("eval_duration", evalNanos);
+    }
+
+    private void addVector(ArrayNode embeddings, String text) {
+        ArrayNode vector = embeddings.addArray();
+        for (float value : vector(text, dimensions)) {
+            vector.add(value);
+        }
+    }
+
+    static float[] vector(String text, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (String token : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (!token.isEmpty()) {
+                vector[Math.floorMod(token.hashCode(), dimensions)] += 1f;
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1f;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private Duration generationTime(int tokens) {
+        return tokensPerSecond <= 0 ? Duration.ZERO : Duration.ofNanos((long) (tokens * 1e9 / tokensPerSecond));
+    }
+
+    static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
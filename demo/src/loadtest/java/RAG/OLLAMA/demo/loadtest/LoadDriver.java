@@ -0,0 +1,161 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Générateur de charge en boucle ouverte : les requêtes partent au débit cible quel que soit
+ * le temps de réponse, et la latence est mesurée depuis l'instant d'envoi prévu (pas de
+ * "coordinated omission" quand le serveur ralentit)
+ */
+final class LoadDriver {
+
+    record Target(String name, double weight, Supplier<HttpRequest> request) {
+    }
+
+    record Stats(String name, int requests, int errors, double throughput,
+                 double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Target> targets;
+    private final double requestsPerSecond;
+    private final Duration requestTimeout;
+    private final Random random = new Random(42);
+
+    LoadDriver(HttpClient client, List<Target> targets, double requestsPerSecond, Duration requestTimeout) {
+        this.client = client;
+        this.targets = targets;
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * @return statistiques par cible, puis le total ; les requêtes prévues pendant le warm-up ne sont pas comptées
+     */
+    List<Stats> run(Duration warmup, Duration duration) throws InterruptedException {
+        Map<String, Recorder> recorders = new LinkedHashMap<>();
+        targets.forEach(target -> recorders.put(target.name(), new Recorder()));
+
+        long intervalNanos = (long) (1e9 / requestsPerSecond);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Target target = pick();
+            Recorder recorder = intended >= measureFrom ? recorders.get(target.name()) : null;
+            long scheduledAt = intended;
+            senders.execute(() -> send(target, scheduledAt, recorder));
+        }
+        senders.shutdown();
+        if (!senders.awaitTermination(requestTimeout.toSeconds() + 5, TimeUnit.SECONDS)) {
+            senders.shutdownNow();
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        List<Stats> stats = new ArrayList<>();
+        Recorder total = new Recorder();
+        recorders.forEach((name, recorder) -> {
+            stats.add(recorder.stats(name, seconds));
+            total.addAll(recorder);
+        });
+        stats.add(total.stats("total", seconds));
+        return stats;
+    }
+
+    private Target pick() {
+        double totalWeight = targets.stream().mapToDouble(Target::weight).sum();
+        double draw = random.nextDouble() * totalWeight;
+        for (Target target : targets) {
+            draw -= target.weight();
+            if (draw < 0) {
+                return target;
+            }
+        }
+        return targets.get(targets.size() - 1);
+    }
+
+    private void send(Target target, long scheduledAt, Recorder recorder) {
+        boolean success;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(target.request().get(), (name, value) -> true)
+                    .timeout(requestTimeout)
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() / 100 == 2;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        if (recorder != null) {
+            recorder.record(System.nanoTime() - scheduledAt, success);
+        }
+    }
+
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void record(long latencyNanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(Recorder other) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) {
+                    record(other.latencies[i], true);
+                }
+                errors += other.errors;
+            }
+        }
+
+        synchronized Stats stats(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new Stats(name, count, errors, (count - errors) / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    count == 0 ? 0 : sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
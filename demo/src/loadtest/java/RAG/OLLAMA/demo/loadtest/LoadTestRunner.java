@@ -0,0 +1,296 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import RAG.OLLAMA.demo.DemoApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Test de charge de bout en bout : démarre les faux serveurs Ollama et Jira, une instance
+ * PostgreSQL jetable ({@link LocalPostgres}), l'application (profil loadtest) sur cette base,
+ * puis envoie /, /jira et /upload au débit cible et affiche débit et latences p50/p95/p99 par endpoint.
+ * <p>
+ * Prérequis : binaires PostgreSQL (initdb, pg_ctl, dans le PATH ou postgres.bin-dir) et extension
+ * pgvector installés, sans serveur démarré ; initdb refuse de tourner en root. Avec postgres=external,
+ * la base datasource.url d'un serveur existant (avec pgvector) est utilisée, et créée au besoin.
+ * <p>
+ * Options (nom=valeur) : rps, warmup, duration, mix (poids par endpoint), request-timeout,
+ * ollama.first-token-latency, ollama.tokens-per-second, ollama.answer-tokens,
+ * ollama.embed-latency, ollama.backends (nombre de faux serveurs, dans les deux pools),
+ * ollama.strategy, ollama.stop-backend-after (arrête le premier serveur en cours de test, pour
+ * vérifier le basculement), jira.latency, jira.jitter, upload.documents, upload.pages,
+ * postgres (local ou external), postgres.bin-dir, datasource.url/username/password (postgres=external),
+ * target (application déjà démarrée), report,
+ * max-p99 et max-error-rate (code de sortie 1 si dépassés).
+ */
+public final class LoadTestRunner {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("rps", "5"),
+            Map.entry("warmup", "15s"),
+            Map.entry("duration", "60s"),
+            Map.entry("mix", "/=6,/jira=3,/upload=1"),
+            Map.entry("request-timeout", "60s"),
+            Map.entry("ollama.first-token-latency", "300ms"),
+            Map.entry("ollama.tokens-per-second", "40"),
+            Map.entry("ollama.answer-tokens", "150"),
+            Map.entry("ollama.embed-latency", "15ms"),
+            Map.entry("ollama.dimensions", "1024"),
+            Map.entry("ollama.backends", "1"),
+            Map.entry("ollama.strategy", "least-outstanding"),
+            Map.entry("ollama.stop-backend-after", ""),
+            Map.entry("jira.latency", "80ms"),
+            Map.entry("jira.jitter", "40ms"),
+            Map.entry("upload.documents", "50"),
+            Map.entry("upload.pages", "5"),
+            Map.entry("postgres", "local"),
+            Map.entry("postgres.bin-dir", ""),
+            Map.entry("datasource.url", "jdbc:postgresql://localhost:5432/ragollamapdf_loadtest"),
+            Map.entry("datasource.username", "postgres"),
+            Map.entry("datasource.password", "fares123"),
+            Map.entry("target", ""),
+            Map.entry("report", "target/loadtest-report.json"),
+            Map.entry("max-p99", ""),
+            Map.entry("max-error-rate", ""));
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        boolean passed;
+
+        List<FakeOllamaServer> ollama = new ArrayList<>();
+        try (StubJiraServer jira = new StubJiraServer(duration(options, "jira.latency"), duration(options, "jira.jitter"))) {
+            for (int i = 0; i < Integer.parseInt(options.get("ollama.backends")); i++) {
+                ollama.add(new FakeOllamaServer(
+                        duration(options, "ollama.first-token-latency"),
+                        Double.parseDouble(options.get("ollama.tokens-per-second")),
+                        Integer.parseInt(options.get("ollama.answer-tokens")),
+                        duration(options, "ollama.embed-latency"),
+                        Integer.parseInt(options.get("ollama.dimensions"))));
+            }
+            String ollamaUrls = ollama.stream().map(FakeOllamaServer::baseUrl).collect(Collectors.joining(","));
+            System.out.printf("Fake Ollama on %s, stub Jira on %s%n", ollamaUrls, jira.baseUrl());
+
+            LocalPostgres postgres = null;
+            ConfigurableApplicationContext application = null;
+            URI target;
+            if (options.get("target").isBlank()) {
+                postgres = startPostgres(options);
+                application = startApplication(options, ollamaUrls, jira);
+                target = URI.create("http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port"));
+            } else {
+                // Application démarrée à part : à configurer sur les URL ci-dessus
+                target = URI.create(options.get("target"));
+            }
+
+            if (!options.get("ollama.stop-backend-after").isBlank()) {
+                FakeOllamaServer stopped = ollama.get(0);
+                Thread.ofVirtual().start(() -> {
+                    FakeOllamaServer.sleep(duration(options, "warmup").plus(duration(options, "ollama.stop-backend-after")));
+                    System.out.println("Stopping fake Ollama on " + stopped.baseUrl());
+                    stopped.close();
+                });
+            }
+
+            try {
+                List<LoadDriver.Stats> stats = drive(options, target);
+                print(stats);
+                writeReport(options, stats);
+                passed = withinThresholds(options, stats);
+            } finally {
+                if (application != null) {
+                    application.close();
+                }
+                if (postgres != null) {
+                    postgres.close();
+                }
+            }
+        } finally {
+            ollama.forEach(FakeOllamaServer::close);
+        }
+        // Code de sortie exploitable en CI pour détecter une régression
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * @return Instance locale démarrée (datasource.* pointent alors dessus), ou null avec postgres=external
+     */
+    private static LocalPostgres startPostgres(Map<String, String> options) throws Exception {
+        switch (options.get("postgres")) {
+            case "external" -> {
+                return null;
+            }
+            case "local" -> {
+                LocalPostgres postgres = LocalPostgres.start(options.get("postgres.bin-dir"));
+                String url = options.get("datasource.url");
+                options.put("datasource.url", postgres.jdbcUrl(url.substring(url.lastIndexOf('/') + 1)));
+                options.put("datasource.username", LocalPostgres.USERNAME);
+                options.put("datasource.password", "");
+                System.out.printf("Local PostgreSQL on %s%n", options.get("datasource.url"));
+                return postgres;
+            }
+            default -> throw new IllegalArgumentException("Unknown postgres mode (local or external): " + options.get("postgres"));
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(Map<String, String> options,
+                                                                   String ollamaUrls, StubJiraServer jira) throws SQLException {
+        createDatabaseIfMissing(options.get("datasource.url"),
+                options.get("datasource.username"), options.get("datasource.password"));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.ai.ollama.base-url", ollamaUrls.split(",")[0]);
+        properties.put("ollama.pools.chat.endpoints", ollamaUrls);
+        properties.put("ollama.pools.embedding.endpoints", ollamaUrls);
+        properties.put("ollama.pools.strategy", options.get("ollama.strategy"));
+        // Deux générations simultanées par serveur plus la place réservée aux embeddings,
+        // comme la configuration par défaut pour un seul
+        properties.put("llm.scheduler.max-concurrent", 2 * ollamaUrls.split(",").length + 1);
+        properties.put("jira.url", jira.baseUrl());
+        properties.put("spring.datasource.url", options.get("datasource.url"));
+        properties.put("spring.datasource.username", options.get("datasource.username"));
+        properties.put("spring.datasource.password", options.get("datasource.password"));
+        properties.put("spring.ai.vectorstore.pgvector.dimensions", options.get("ollama.dimensions"));
+
+        return new SpringApplicationBuilder(DemoApplication.class)
+                .profiles("loadtest")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Base dédiée créée au besoin, sur l'instance locale ou externe (Flyway crée ensuite
+     * l'extension et les tables)
+     */
+    private static void createDatabaseIfMissing(String url, String username, String password) throws SQLException {
+        int databaseStart = url.lastIndexOf('/') + 1;
+        int databaseEnd = url.indexOf('?', databaseStart);
+        String database = url.substring(databaseStart, databaseEnd < 0 ? url.length() : databaseEnd);
+        String maintenanceUrl = url.substring(0, databaseStart) + "postgres";
+
+        try (Connection connection = DriverManager.getConnection(maintenanceUrl, username, password);
+             PreparedStatement exists = connection.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+            exists.setString(1, database);
+            try (ResultSet resultSet = exists.executeQuery()) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+            try (Statement create = connection.createStatement()) {
+                create.execute("CREATE DATABASE \"" + database.replace("\"", "\"\"") + "\"");
+            }
+        }
+    }
+
+    private static List<LoadDriver.Stats> drive(Map<String, String> options, URI target) throws Exception {
+        Workload workload = new Workload(target,
+                Integer.parseInt(options.get("upload.documents")), Integer.parseInt(options.get("upload.pages")));
+
+        List<LoadDriver.Target> targets = new ArrayList<>();
+        for (String entry : options.get("mix").split(",")) {
+            String[] endpointAndWeight = entry.trim().split("=");
+            double weight = Double.parseDouble(endpointAndWeight[1]);
+            if (weight <= 0) {
+                continue;
+            }
+            switch (endpointAndWeight[0]) {
+                case "/" -> targets.add(workload.rag(weight));
+                case "/jira" -> targets.add(workload.jira(weight));
+                case "/upload" -> targets.add(workload.upload(weight));
+                default -> throw new IllegalArgumentException("Unknown endpoint in mix: " + endpointAndWeight[0]);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        double rps = Double.parseDouble(options.get("rps"));
+        System.out.printf("Driving %s at %.1f req/s (warm-up %s, measured %s)%n",
+                options.get("mix"), rps, options.get("warmup"), options.get("duration"));
+
+        return new LoadDriver(client, targets, rps, duration(options, "request-timeout"))
+                .run(duration(options, "warmup"), duration(options, "duration"));
+    }
+
+    private static void print(List<LoadDriver.Stats> stats) {
+        System.out.printf("%n%-10s %9s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "ok/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LoadDriver.Stats stat : stats) {
+            System.out.printf("%-10s %9d %8d %10.2f %10.1f %10.1f %10.1f %10.1f%n",
+                    stat.name(), stat.requests(), stat.errors(), stat.throughput(),
+                    stat.p50Millis(), stat.p95Millis(), stat.p99Millis(), stat.maxMillis());
+        }
+    }
+
+    private static void writeReport(Map<String, String> options, List<LoadDriver.Stats> stats) throws Exception {
+        File report = new File(options.get("report"));
+        if (report.getParentFile() != null) {
+            report.getParentFile().mkdirs();
+        }
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("options", options);
+        content.put("results", stats);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, content);
+        System.out.println("Report written to " + report.getAbsolutePath());
+    }
+
+    private static boolean withinThresholds(Map<String, String> options, List<LoadDriver.Stats> stats) {
+        LoadDriver.Stats total = stats.get(stats.size() - 1);
+        boolean ok = true;
+        if (!options.get("max-p99").isBlank()
+                && total.p99Millis() > duration(options, "max-p99").toMillis()) {
+            System.out.printf("p99 %.1f ms above max-p99 %s%n", total.p99Millis(), options.get("max-p99"));
+            ok = false;
+        }
+        if (!options.get("max-error-rate").isBlank()
+                && total.errorRate() > Double.parseDouble(options.get("max-error-rate"))) {
+            System.out.printf("Error rate %.3f above max-error-rate %s%n", total.errorRate(), options.get("max-error-rate"));
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value, got: " + arg);
+            }
+            String name = option.substring(0, separator);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+            options.put(name, option.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static Duration duration(Map<String, String> options, String name) {
+        return DurationStyle.detectAndParse(options.get(name));
+    }
+}
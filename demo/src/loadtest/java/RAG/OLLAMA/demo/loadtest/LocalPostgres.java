@@ -0,0 +1,139 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Instance PostgreSQL jetable pour le test de charge : initdb dans un répertoire temporaire,
+ * démarrage par pg_ctl sur un port libre de 127.0.0.1, arrêt et suppression à la fermeture.
+ * pgvector ne s'embarque pas dans un Postgres "embedded" Java : il faut les binaires PostgreSQL
+ * et l'extension vector installés sur la machine (paquets postgresql et postgresql-pgvector),
+ * mais aucun serveur déjà démarré.
+ */
+final class LocalPostgres implements AutoCloseable {
+
+    static final String USERNAME = "postgres";
+
+    private final String binDir;
+    private final Path directory;
+    private final Path dataDirectory;
+    private final Path logFile;
+    private final int port;
+
+    private LocalPostgres(String binDir, Path directory, int port) {
+        this.binDir = binDir;
+        this.directory = directory;
+        this.dataDirectory = directory.resolve("data");
+        this.logFile = directory.resolve("postgres.log");
+        this.port = port;
+    }
+
+    /**
+     * @param binDir Répertoire de initdb et pg_ctl, vide pour les chercher dans le PATH
+     */
+    static LocalPostgres start(String binDir) throws IOException, InterruptedException, SQLException {
+        LocalPostgres postgres = new LocalPostgres(binDir, Files.createTempDirectory("loadtest-postgres-"), freePort());
+        try {
+            postgres.run(postgres.binary("initdb"), "-D", postgres.dataDirectory.toString(),
+                    "-U", USERNAME, "-A", "trust", "-E", "UTF8", "--no-locale");
+            postgres.run(postgres.binary("pg_ctl"), "-D", postgres.dataDirectory.toString(),
+                    "-l", postgres.logFile.toString(), "-w",
+                    "-o", "-p " + postgres.port + " -k " + postgres.directory + " -c listen_addresses=127.0.0.1",
+                    "start");
+            postgres.checkPgvector();
+            return postgres;
+        } catch (IOException | InterruptedException | SQLException | RuntimeException e) {
+            postgres.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param database Base à utiliser (créée ensuite par LoadTestRunner)
+     */
+    String jdbcUrl(String database) {
+        return "jdbc:postgresql://127.0.0.1:" + port + "/" + database;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (Files.exists(dataDirectory.resolve("postmaster.pid"))) {
+                run(binary("pg_ctl"), "-D", dataDirectory.toString(), "-m", "fast", "-w", "stop");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not stop local PostgreSQL in " + dataDirectory + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delete(directory);
+    }
+
+    private void checkPgvector() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl("postgres"), USERNAME, "");
+             Statement statement = connection.createStatement();
+             ResultSet available = statement.executeQuery(
+                     "SELECT 1 FROM pg_available_extensions WHERE name = 'vector'")) {
+            if (!available.next()) {
+                throw new IllegalStateException("The pgvector extension is not installed for this PostgreSQL ("
+                        + binary("pg_ctl") + "): install it, or use postgres=external with datasource.url");
+            }
+        }
+    }
+
+    private String binary(String name) {
+        return binDir.isBlank() ? name : Path.of(binDir, name).toString();
+    }
+
+    private void run(String... command) throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(directory.resolve("commands.log").toFile()))
+                    .start();
+        } catch (IOException e) {
+            throw new IOException("Cannot run " + command[0] + ": install PostgreSQL and pgvector, set postgres.bin-dir,"
+                    + " or use postgres=external with datasource.url", e);
+        }
+        if (process.waitFor() != 0) {
+            // Le répertoire est supprimé à la fermeture : les journaux vont dans le message
+            StringBuilder message = new StringBuilder(String.join(" ", command)).append(" failed:\n")
+                    .append(Files.readString(directory.resolve("commands.log")));
+            if (Files.exists(logFile)) {
+                message.append(Files.readString(logFile));
+            }
+            throw new IllegalStateException(message.toString());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serveur REST Jira minimal pour JRJC : rejoue les réponses enregistrées dans
+ * src/loadtest/resources/jira (projets, recherche JQL paginée, issues avec commentaires),
+ * avec une latence configurable (base + gigue uniforme)
+ */
+final class StubJiraServer implements AutoCloseable {
+
+    private static final String API = "/rest/api/latest";
+    private static final Pattern PROJECT = Pattern.compile(API + "/project/([^/]+)");
+    private static final Pattern ISSUE = Pattern.compile(API + "/issue/([^/]+)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, JsonNode> fixtures = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    private final Duration latency;
+    private final Duration jitter;
+
+    StubJiraServer(Duration latency, Duration jitter) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext(API, this::handle);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long jitterNanos = jitter.toNanos();
+            FakeOllamaServer.sleep(latency.plusNanos(
+                    jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0));
+
+            String path = exchange.getRequestURI().getPath();
+            Matcher project = PROJECT.matcher(path);
+            Matcher issue = ISSUE.matcher(path);
+
+            JsonNode body;
+            if (path.equals(API + "/project")) {
+                body = fixture("projects.json");
+            } else if (project.matches()) {
+                body = fixture("project-" + project.group(1) + ".json");
+            } else if (path.equals(API + "/search")) {
+                body = search(exchange);
+            } else if (issue.matches() && "GET".equals(exchange.getRequestMethod())) {
+                body = fixture("issue-" + issue.group(1) + ".json");
+            } else {
+                body = null;
+            }
+
+            if (body == null) {
+                FakeOllamaServer.respond(exchange, 404,
+                        "{\"errorMessages\":[\"No fixture for " + exchange.getRequestMethod() + " " + path + "\"],\"errors\":{}}");
+                return;
+            }
+            FakeOllamaServer.respond(exchange, 200, objectMapper.writeValueAsString(body));
+        }
+    }
+
+    /**
+     * Même jeu d'issues quelle que soit la JQL, découpé selon startAt/maxResults (GET ou POST)
+     */
+    private JsonNode search(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = "POST".equals(exchange.getRequestMethod())
+                ? bodyParameters(exchange)
+                : queryParameters(exchange.getRequestURI().getRawQuery());
+        int startAt = Integer.parseInt(parameters.getOrDefault("startAt", "0"));
+        int maxResults = Integer.parseInt(parameters.getOrDefault("maxResults", "50"));
+
+        ObjectNode page = fixture("search.json").deepCopy();
+        ArrayNode issues = (ArrayNode) page.get("issues");
+        ArrayNode slice = objectMapper.createArrayNode();
+        for (int i = startAt; i < Math.min(issues.size(), startAt + maxResults); i++) {
+            slice.add(issues.get(i));
+        }
+        page.put("startAt", startAt);
+        page.put("maxResults", maxResults);
+        page.put("total", issues.size());
+        page.set("issues", slice);
+        return page;
+    }
+
+    private Map<String, String> bodyParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        objectMapper.readTree(exchange.getRequestBody()).fields()
+                .forEachRemaining(field -> parameters.put(field.getKey(), field.getValue().asText()));
+        return parameters;
+    }
+
+    private static Map<String, String> queryParameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private JsonNode fixture(String name) {
+        JsonNode cached = fixtures.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        try (InputStream in = StubJiraServer.class.getResourceAsStream("/jira/" + name)) {
+            if (in == null) {
+                return null;
+            }
+            JsonNode fixture = objectMapper.readTree(in);
+            fixtures.put(name, fixture);
+            return fixture;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package RAG.OLLAMA.demo.loadtest;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requêtes envoyées à PdfVectorController : questions RAG (/), questions Jira (/jira) et
+ * envois de PDF (/upload). Les questions tirent des mots au hasard pour que le cache de
+ * réponses ne serve pas tout le trafic ; les PDF sont générés une fois avec une graine fixe.
+ */
+final class Workload {
+
+    private static final String[] TOPICS = {
+            "upload", "timeout", "parser", "chunk", "metadata", "embedding", "retrieval", "streaming",
+            "swagger", "version", "release", "latency", "cache", "index", "page", "table", "summary",
+            "requirement", "validation", "configuration", "database", "vector", "prompt", "answer"};
+
+    private static final String[] RAG_QUESTIONS = {
+            "What does the specification say about %s and %s?",
+            "Summarize the section on %s, in particular %s",
+            "Which requirements mention both %s and %s?"};
+
+    private static final String[] JIRA_QUESTIONS = {
+            "Which tickets of version 10000 are about %s and %s?",
+            "What is the status of AIAG-3 and how does it relate to %s or %s?",
+            "Who commented on AIAG-17 about %s, and is %s still open?",
+            "List the open jira bugs about %s and %s"};
+
+    private final URI baseUri;
+    private final List<byte[]> pdfs;
+    private final AtomicInteger nextPdf = new AtomicInteger();
+
+    Workload(URI baseUri, int pdfCount, int pagesPerPdf) throws IOException {
+        this.baseUri = baseUri;
+        this.pdfs = new ArrayList<>(pdfCount);
+        for (int i = 0; i < pdfCount; i++) {
+            pdfs.add(pdf(pagesPerPdf, i));
+        }
+    }
+
+    LoadDriver.Target rag(double weight) {
+        return new LoadDriver.Target("/", weight, () -> get("/", question(RAG_QUESTIONS)));
+    }
+
+    LoadDriver.Target jira(double weight) {
+        return new LoadDriver.Target("/jira", weight, () -> get("/jira", question(JIRA_QUESTIONS)));
+    }
+
+    LoadDriver.Target upload(double weight) {
+        return new LoadDriver.Target("/upload", weight, () -> {
+            byte[] pdf = pdfs.get(Math.floorMod(nextPdf.getAndIncrement(), pdfs.size()));
+            return multipart(pdf, question(RAG_QUESTIONS));
+        });
+    }
+
+    private HttpRequest get(String path, String question) {
+        return HttpRequest.newBuilder(baseUri.resolve(path + "?question="
+                        + URLEncoder.encode(question, StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest multipart(byte[] pdf, String question) {
+        String boundary = "loadtest-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pdf.length + 512);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"question\"\r\n\r\n"
+                + question + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"specification.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(pdf);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder(baseUri.resolve("/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private static String question(String[] templates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(templates[random.nextInt(templates.length)],
+                TOPICS[random.nextInt(TOPICS.length)], TOPICS[random.nextInt(TOPICS.length)]);
+    }
+
+    private static byte[] pdf(int pages, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int pageIndex = 0; pageIndex < pages; pageIndex++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.newLineAtOffset(50, 800);
+                    for (int line = 0; line < 50; line++) {
+                        StringBuilder text = new StringBuilder("Document " + seed + " requirement " + line + ":");
+                        for (int word = 0; word < 10; word++) {
+                            text.append(' ').append(TOPICS[random.nextInt(TOPICS.length)]);
+                        }
+                        content.showText(text.toString());
+                        content.newLineAtOffset(0, -14);
+                    }
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package RAG.OLLAMA.demo.config;
+
+import RAG.OLLAMA.demo.service.LlmScheduler;
+import RAG.OLLAMA.demo.service.MeteredChatModel;
+import RAG.OLLAMA.demo.service.OllamaPool;
+import RAG.OLLAMA.demo.service.PipelineMetrics;
+import RAG.OLLAMA.demo.service.RoutingChatModel;
+import RAG.OLLAMA.demo.service.ScheduledChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.autoconfigure.ollama.OllamaChatProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class ChatConfig {
+
+    // Toutes les générations (réponses, détection Jira) passent par ce modèle ;
+    // l'étape "generation" ne compte pas l'attente dans la file du scheduler, puis le pool choisit le serveur
+    @Bean
+    @Primary
+    public ChatModel scheduledChatModel(OllamaPool<ChatModel> chatPool, OllamaChatProperties properties,
+                                        PipelineMetrics metrics, LlmScheduler scheduler) {
+        return new ScheduledChatModel(
+                new MeteredChatModel(new RoutingChatModel(chatPool, properties.getOptions()), metrics), scheduler);
+    }
+}
@@ -0,0 +1,29 @@
+package RAG.OLLAMA.demo.config;
+
+import RAG.OLLAMA.demo.service.CachingEmbeddingModel;
+import RAG.OLLAMA.demo.service.EmbeddingCache;
+import RAG.OLLAMA.demo.service.LlmScheduler;
+import RAG.OLLAMA.demo.service.OllamaPool;
+import RAG.OLLAMA.demo.service.PipelineMetrics;
+import RAG.OLLAMA.demo.service.RoutingEmbeddingModel;
+import RAG.OLLAMA.demo.service.ScheduledEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class EmbeddingConfig {
+
+    // Utilisé par le VectorStore (chunks) comme par les services (questions) ;
+    // seuls les textes absents du cache attendent une place auprès du scheduler, puis un serveur du pool
+    @Bean
+    @Primary
+    public EmbeddingModel cachingEmbeddingModel(OllamaPool<EmbeddingModel> embeddingPool, EmbeddingCache embeddingCache,
+                                                PipelineMetrics metrics, LlmScheduler scheduler,
+                                                @Value("${spring.ai.ollama.embedding.model}") String model) {
+        return new CachingEmbeddingModel(new ScheduledEmbeddingModel(new RoutingEmbeddingModel(embeddingPool), scheduler),
+                embeddingCache, metrics, model);
+    }
+}
@@ -0,0 +1,96 @@
+package RAG.OLLAMA.demo.config;
+
+import RAG.OLLAMA.demo.service.OllamaPool;
+import RAG.OLLAMA.demo.service.PipelineMetrics;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.autoconfigure.ollama.OllamaChatProperties;
+import org.springframework.ai.autoconfigure.ollama.OllamaEmbeddingProperties;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.management.ModelManagementOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pools de serveurs Ollama : un pour la génération, un pour les embeddings (les mêmes URL ou
+ * des machines distinctes). Chaque serveur a son propre client et son propre modèle Spring AI,
+ * avec les options spring.ai.ollama.chat.* / spring.ai.ollama.embedding.*.
+ */
+@Configuration
+public class OllamaPoolConfig {
+
+    private final ObjectProvider<RestClient.Builder> restClientBuilder;
+    private final ObjectProvider<WebClient.Builder> webClientBuilder;
+    private final ObservationRegistry observationRegistry;
+    private final PipelineMetrics metrics;
+    private final OllamaPool.Strategy strategy;
+    private final int maxAttempts;
+    private final int failureThreshold;
+    private final Duration healthCheckTimeout;
+
+    public OllamaPoolConfig(ObjectProvider<RestClient.Builder> restClientBuilder,
+                            ObjectProvider<WebClient.Builder> webClientBuilder,
+                            ObjectProvider<ObservationRegistry> observationRegistry,
+                            PipelineMetrics metrics,
+                            @Value("${ollama.pools.strategy:least-outstanding}") OllamaPool.Strategy strategy,
+                            @Value("${ollama.pools.max-attempts:2}") int maxAttempts,
+                            @Value("${ollama.pools.failure-threshold:3}") int failureThreshold,
+                            @Value("${ollama.pools.health-check-timeout:2s}") Duration healthCheckTimeout) {
+        this.restClientBuilder = restClientBuilder;
+        this.webClientBuilder = webClientBuilder;
+        this.observationRegistry = observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP);
+        this.metrics = metrics;
+        this.strategy = strategy;
+        this.maxAttempts = maxAttempts;
+        this.failureThreshold = failureThreshold;
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    @Bean
+    public OllamaPool<ChatModel> chatPool(@Value("${ollama.pools.chat.endpoints}") List<String> endpoints,
+                                          OllamaChatProperties properties) {
+        return pool("chat", endpoints, api -> OllamaChatModel.builder()
+                .ollamaApi(api)
+                .defaultOptions(properties.getOptions())
+                .observationRegistry(observationRegistry)
+                .modelManagementOptions(ModelManagementOptions.defaults())
+                .build());
+    }
+
+    @Bean
+    public OllamaPool<EmbeddingModel> embeddingPool(@Value("${ollama.pools.embedding.endpoints}") List<String> endpoints,
+                                                    OllamaEmbeddingProperties properties) {
+        return pool("embedding", endpoints, api -> OllamaEmbeddingModel.builder()
+                .ollamaApi(api)
+                .defaultOptions(properties.getOptions())
+                .observationRegistry(observationRegistry)
+                .modelManagementOptions(ModelManagementOptions.defaults())
+                .build());
+    }
+
+    private <M> OllamaPool<M> pool(String name, List<String> endpoints, Function<OllamaApi, M> model) {
+        List<OllamaPool.Backend<M>> backends = endpoints.stream()
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .distinct()
+                .map(url -> {
+                    OllamaApi api = new OllamaApi(url,
+                            restClientBuilder.getIfAvailable(RestClient::builder),
+                            webClientBuilder.getIfAvailable(WebClient::builder));
+                    return new OllamaPool.Backend<>(url, api, model.apply(api));
+                })
+                .toList();
+        return new OllamaPool<>(name, backends, strategy, maxAttempts, failureThreshold, healthCheckTimeout, metrics);
+    }
+}
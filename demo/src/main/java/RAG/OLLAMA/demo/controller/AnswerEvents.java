@@ -0,0 +1,43 @@
+package RAG.OLLAMA.demo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Turns streamed answer tokens into server-sent events.
+ *
+ * Every token is sent as a JSON string ({@code data:" the"}): SSE clients drop the first space after
+ * {@code data:} and treat a newline as the end of the line, so raw llama tokens would lose their
+ * leading space and any line break. Error messages go out as an {@code error} event in the same form.
+ */
+@Component
+class AnswerEvents {
+
+    static final String ERROR_EVENT = "error";
+
+    private final ObjectMapper objectMapper;
+
+    AnswerEvents(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    Flux<ServerSentEvent<String>> tokens(Flux<String> tokens) {
+        return tokens.map(token -> ServerSentEvent.builder(encode(token)).build());
+    }
+
+    ServerSentEvent<String> error(String message) {
+        return ServerSentEvent.builder(encode(message)).event(ERROR_EVENT).build();
+    }
+
+    private String encode(String text) {
+        try {
+            return objectMapper.writeValueAsString(text);
+        } catch (JsonProcessingException e) {
+            // A plain string always serializes; keep the signature free of checked exceptions
+            throw new IllegalStateException("Cannot encode streamed token", e);
+        }
+    }
+}
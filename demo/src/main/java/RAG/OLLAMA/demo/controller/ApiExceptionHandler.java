@@ -0,0 +1,37 @@
+package RAG.OLLAMA.demo.controller;
+
+import RAG.OLLAMA.demo.service.JiraUnavailableException;
+import RAG.OLLAMA.demo.service.LlmOverloadedException;
+import RAG.OLLAMA.demo.service.UploadBudgetExceededException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps the "try again later" exceptions of every controller to 503, so status codes and
+ * Retry-After headers stay the same across endpoints.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(LlmOverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(LlmOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(UploadBudgetExceededException.class)
+    public ResponseEntity<String> handleUploadBudgetExceeded(UploadBudgetExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(JiraUnavailableException.class)
+    public ResponseEntity<String> handleJiraUnavailable(JiraUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+}
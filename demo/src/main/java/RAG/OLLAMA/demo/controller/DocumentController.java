@@ -0,0 +1,78 @@
+package RAG.OLLAMA.demo.controller;
+
+import RAG.OLLAMA.demo.service.IngestionJob;
+import RAG.OLLAMA.demo.service.IngestionJobService;
+import RAG.OLLAMA.demo.service.PdfService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/documents")
+public class DocumentController {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentController.class);
+
+    private final IngestionJobService ingestionJobService;
+    private final PdfService pdfService;
+    private final AnswerEvents answerEvents;
+
+    public DocumentController(IngestionJobService ingestionJobService, PdfService pdfService, AnswerEvents answerEvents) {
+        this.ingestionJobService = ingestionJobService;
+        this.pdfService = pdfService;
+        this.answerEvents = answerEvents;
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<IngestionJob> upload(@RequestParam("file") MultipartFile file) throws IOException {
+        IngestionJob job = ingestionJobService.submit(file);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/{id}/status")
+    public ResponseEntity<IngestionJob> status(@PathVariable String id) {
+        IngestionJob job = ingestionJobService.getJob(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{id}/ask")
+    public ResponseEntity<String> ask(@PathVariable String id, @RequestParam("question") String question) {
+        IngestionJob job = ingestionJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != IngestionJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Document " + id + " is not ingested yet (status: " + job.getStatus() + ")");
+        }
+
+        logger.info("Processing question for document {}: {}", id, question);
+        return ResponseEntity.ok(pdfService.answerQuestionForDocument(id, question));
+    }
+
+    @GetMapping(value = "/{id}/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> askStream(@PathVariable String id, @RequestParam("question") String question) {
+        IngestionJob job = ingestionJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != IngestionJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        logger.info("Processing streamed question for document {}: {}", id, question);
+        return ResponseEntity.ok(answerEvents.tokens(pdfService.streamAnswerForDocument(id, question)));
+    }
+}
@@ -1,6 +1,7 @@
 package RAG.OLLAMA.demo.controller;
 
 
+import RAG.OLLAMA.demo.service.JiraIntentClassifier;
 import RAG.OLLAMA.demo.service.MyJiraClient;
 import com.atlassian.jira.rest.client.api.domain.Comment;
 import com.atlassian.jira.rest.client.api.domain.Issue;
@@ -9,16 +10,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/jira")
 public class JiraController {
 
     private final MyJiraClient myJiraClient;
+    private final JiraIntentClassifier intentClassifier;
 
     @Autowired
-    public JiraController(MyJiraClient myJiraClient){
+    public JiraController(MyJiraClient myJiraClient, JiraIntentClassifier intentClassifier){
         this.myJiraClient = myJiraClient;
+        this.intentClassifier = intentClassifier;
     }
 
     @PostMapping("/createIssue")
@@ -67,4 +71,9 @@ public class JiraController {
     public List<Issue> getTicketsByVersion(@PathVariable String versionId) {
         return myJiraClient.getTicketsByVersion(versionId);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/intent/routes")
+    public Map<JiraIntentClassifier.Route, Long> getIntentRoutes() {
+        return intentClassifier.getRouteCounts();
+    }
+}
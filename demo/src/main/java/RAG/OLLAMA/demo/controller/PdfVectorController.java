@@ -1,12 +1,17 @@
 package RAG.OLLAMA.demo.controller;
 
+import RAG.OLLAMA.demo.service.InteractionRouter;
 import RAG.OLLAMA.demo.service.JiraPromptHandler;
+import RAG.OLLAMA.demo.service.LlmOverloadedException;
 import RAG.OLLAMA.demo.service.PdfService;
+import RAG.OLLAMA.demo.service.UploadBudgetExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -14,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import org.springframework.ai.document.Document;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,92 +29,129 @@ public class PdfVectorController {
     private static final Logger logger = LoggerFactory.getLogger(PdfVectorController.class);
 
     private final VectorStore vectorStore;
-    private final ChatModel chatModel;
     private final PdfService pdfService;
     private final JiraPromptHandler jiraPromptHandler;
+    private final InteractionRouter interactionRouter;
+    private final AnswerEvents answerEvents;
 
     public PdfVectorController(
             VectorStore vectorStore,
-            ChatModel chatModel,
             PdfService pdfService,
-            JiraPromptHandler jiraPromptHandler
+            JiraPromptHandler jiraPromptHandler,
+            InteractionRouter interactionRouter,
+            AnswerEvents answerEvents
     ) {
         this.vectorStore = vectorStore;
-        this.chatModel = chatModel;
         this.pdfService = pdfService;
         this.jiraPromptHandler = jiraPromptHandler;
+        this.interactionRouter = interactionRouter;
+        this.answerEvents = answerEvents;
     }
 
     @GetMapping("/")
-    public String simplify(@RequestParam(value = "question", defaultValue = "Summarize the document") String question) {
+    public ResponseEntity<String> simplify(@RequestParam(value = "question", defaultValue = "Summarize the document") String question) {
         try {
             logger.info("Processing question: {}", question);
 
-            // First, check if this is a simple chat message or greeting
-            if (isSimpleInteraction(question)) {
-                logger.info("Processing as simple interaction");
-                return chatModel.call(question);
+            // Greetings and acknowledgements get a canned reply, without taking a slot on the LLM
+            InteractionRouter.Decision decision = interactionRouter.route(question);
+            if (decision.route() == InteractionRouter.Route.CANNED) {
+                return ResponseEntity.ok(decision.reply());
             }
 
-            // Use the new JIRA/RAG handler that determines if JIRA is needed and processes accordingly
-            return jiraPromptHandler.processQueryWithRagAndJira(question);
+            // Ticket references and document questions: the JIRA/RAG handler decides what to fetch,
+            // starting from the tickets the router recognised
+            return ResponseEntity.ok(jiraPromptHandler.processQueryWithRagAndJira(question, decision.tickets()));
 
+        } catch (LlmOverloadedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error processing request", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the request: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            return failure("Error processing request", "the request", e);
         }
     }
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String uploadAndQuery(
+    public ResponseEntity<String> uploadAndQuery(
             @RequestParam("file") MultipartFile file,
             @RequestParam("question") String question) {
         try {
             // Process the uploaded PDF and store in vector database
-            String response = pdfService.processPdfAndAnswerQuestion(file, question);
-            return response;
+            return ResponseEntity.ok(pdfService.processPdfAndAnswerQuestion(file, question));
+        } catch (LlmOverloadedException | UploadBudgetExceededException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error processing PDF upload", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the PDF upload: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            return failure("Error processing PDF upload", "the PDF upload", e);
         }
     }
 
     @GetMapping("/jira")
-    public String jiraQuery(@RequestParam("question") String question) {
+    public ResponseEntity<String> jiraQuery(@RequestParam("question") String question) {
         try {
             logger.info("Processing direct Jira query: {}", question);
-            return jiraPromptHandler.processQueryWithRagAndJira(question);
+            InteractionRouter.Decision decision = interactionRouter.route(question);
+            if (decision.route() == InteractionRouter.Route.CANNED) {
+                return ResponseEntity.ok(decision.reply());
+            }
+            return ResponseEntity.ok(jiraPromptHandler.processQueryWithRagAndJira(question, decision.tickets()));
+        } catch (LlmOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            return failure("Error processing Jira query", "the Jira query", e);
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> simplifyStream(@RequestParam(value = "question", defaultValue = "Summarize the document") String question) {
+        logger.info("Processing streamed question: {}", question);
+
+        InteractionRouter.Decision decision = interactionRouter.route(question);
+        if (decision.route() == InteractionRouter.Route.CANNED) {
+            return answerEvents.tokens(Flux.just(decision.reply()));
+        }
+
+        return answerEvents.tokens(jiraPromptHandler.streamQueryWithRagAndJira(question, decision.tickets()))
+                .onErrorResume(e -> errorMessage("Error processing streamed request", "the request", e));
+    }
+
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> uploadAndQueryStream(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("question") String question) {
+        Flux<String> answer;
+        try {
+            answer = pdfService.streamPdfAnswer(file, question);
         } catch (Exception e) {
-            logger.error("Error processing Jira query", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the Jira query: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            answer = Flux.error(e);
+        }
+
+        return answerEvents.tokens(answer).onErrorResume(e -> errorMessage("Error processing streamed PDF upload", "the PDF upload", e));
+    }
+
+    @GetMapping(value = "/jira/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> jiraQueryStream(@RequestParam("question") String question) {
+        logger.info("Processing streamed Jira query: {}", question);
+        InteractionRouter.Decision decision = interactionRouter.route(question);
+        if (decision.route() == InteractionRouter.Route.CANNED) {
+            return answerEvents.tokens(Flux.just(decision.reply()));
         }
+        return answerEvents.tokens(jiraPromptHandler.streamQueryWithRagAndJira(question, decision.tickets()))
+                .onErrorResume(e -> errorMessage("Error processing streamed Jira query", "the Jira query", e));
     }
 
-    private boolean isSimpleInteraction(String question) {
-        String normalized = question.toLowerCase().trim();
-        return normalized.equals("hello") ||
-                normalized.equals("hi") ||
-                normalized.equals("hey") ||
-                normalized.startsWith("hello ") ||
-                normalized.startsWith("hi ") ||
-                normalized.length() < 10; // Very short messages likely simple interactions
+    // No LLM call once something has failed: the model itself may be the reason why
+    private ResponseEntity<String> failure(String logMessage, String operation, Exception e) {
+        logger.error(logMessage, e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("There was an error processing " + operation + ": " + e.getMessage());
+    }
+
+    private Flux<ServerSentEvent<String>> errorMessage(String logMessage, String operation, Throwable e) {
+        if (e instanceof LlmOverloadedException || e instanceof UploadBudgetExceededException) {
+            // Before the first token this still becomes a 503 (see ApiExceptionHandler)
+            return Flux.error(e);
+        }
+        logger.error(logMessage, e);
+        return Flux.just(answerEvents.error("There was an error processing " + operation + ": " + e.getMessage()));
     }
 }
\ No newline at end of file
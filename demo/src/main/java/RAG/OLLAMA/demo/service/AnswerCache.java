@@ -0,0 +1,210 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Two-tier cache of generated answers.
+ * <ul>
+ *     <li>exact tier: normalized question + ids of the retrieved documents</li>
+ *     <li>semantic tier: a cached answer is reused when the question embedding is close enough
+ *     to a cached one and both questions reference the same tickets/versions</li>
+ * </ul>
+ * Entries expire after a TTL, the cache is LRU-bounded, and entries are dropped when new
+ * documents are stored for one of the tickets/versions they were built from. Answers to questions
+ * without identifiers, and answers built from PDF chunks, are also dropped when a PDF is ingested.
+ */
+@Service
+public class AnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(AnswerCache.class);
+
+    /**
+     * Cache tag of answers that a newly ingested PDF may change.
+     */
+    public static final String PDF_TAG = "pdf";
+
+    private final Duration ttl;
+    private final double similarityThreshold;
+    private final Map<String, Entry> entries;
+
+    public AnswerCache(
+            @Value("${answer.cache.ttl:30m}") Duration ttl,
+            @Value("${answer.cache.max-entries:500}") int maxEntries,
+            @Value("${answer.cache.similarity-threshold:0.95}") double similarityThreshold) {
+        this.ttl = ttl;
+        this.similarityThreshold = similarityThreshold;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Semantic lookup, done before any JIRA call or retrieval.
+     *
+     * @param embedding   Embedding of the new question
+     * @param identifiers Ticket keys / versions / project keys referenced by the new question
+     * @return Cached answer, or null
+     */
+    public synchronized String findSimilar(float[] embedding, Set<String> identifiers) {
+        Instant now = Instant.now();
+        double norm = norm(embedding);
+        Entry best = null;
+        double bestScore = similarityThreshold;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt().isBefore(now)) {
+                iterator.remove();
+                continue;
+            }
+            if (!entry.identifiers().equals(identifiers) || entry.embedding().length != embedding.length) {
+                continue;
+            }
+            double score = dot(embedding, entry.embedding()) / (norm * entry.norm());
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+
+        if (best != null) {
+            logger.info("Semantic answer cache hit (similarity {}) for question: {}", bestScore, best.question());
+            return best.answer();
+        }
+        return null;
+    }
+
+    /**
+     * Exact lookup, done once the documents for the question are known.
+     */
+    public synchronized String findExact(String question, Collection<String> documentIds) {
+        String key = key(question, documentIds);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt().isBefore(Instant.now())) {
+            entries.remove(key);
+            return null;
+        }
+        logger.info("Exact answer cache hit for question: {}", question);
+        return entry.answer();
+    }
+
+    /**
+     * @param identifiers Ticket keys / versions / project keys referenced by the question
+     * @param tags        Tickets / versions of the documents the answer was built from, used for invalidation
+     */
+    public synchronized void put(String question, Collection<String> documentIds, float[] embedding,
+                                 Set<String> identifiers, Set<String> tags, String answer) {
+        Set<String> entryTags = new TreeSet<>(tags);
+        if (identifiers.isEmpty()) {
+            // Matched on the embedding alone: any new document may give a different answer
+            entryTags.add(PDF_TAG);
+        }
+        entries.put(key(question, documentIds), new Entry(
+                question, embedding, norm(embedding), Set.copyOf(identifiers), Set.copyOf(entryTags), answer,
+                Instant.now().plus(ttl)));
+    }
+
+    /**
+     * Drops every answer built from documents of the given tickets/versions.
+     */
+    public synchronized void invalidate(Set<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.tags().stream().anyMatch(tags::contains));
+        if (entries.size() < before) {
+            logger.info("Invalidated {} cached answers for {}", before - entries.size(), tags);
+        }
+    }
+
+    private static String key(String question, Collection<String> documentIds) {
+        return normalize(question) + "|" + String.join(",", new TreeSet<>(documentIds));
+    }
+
+    static String normalize(String question) {
+        return question.toLowerCase(Locale.ROOT)
+                .trim()
+                .replaceAll("\\s+", " ")
+                .replaceAll("[?!.\\s]+$", "");
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(float[] vector) {
+        return Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * Cache tags for a ticket key or a version id.
+     */
+    public static String ticketTag(String ticketKey) {
+        return "ticket:" + ticketKey;
+    }
+
+    public static String versionTag(String versionId) {
+        return "version:" + versionId;
+    }
+
+    public static String projectTag(String projectKey) {
+        return "project:" + projectKey;
+    }
+
+    static Set<String> tagsOf(List<String> versions, List<String> tickets) {
+        Set<String> tags = new TreeSet<>();
+        versions.forEach(version -> tags.add(versionTag(version)));
+        tickets.forEach(ticket -> tags.add(ticketTag(ticket)));
+        return tags;
+    }
+
+    static Set<String> tagsOf(Collection<Document> documents) {
+        Set<String> tags = new TreeSet<>();
+        for (Document document : documents) {
+            Map<String, Object> metadata = document.getMetadata();
+            if (metadata.get("ticket_key") != null) {
+                tags.add(ticketTag(metadata.get("ticket_key").toString()));
+            }
+            if (metadata.get("issue_key") != null) {
+                tags.add(ticketTag(metadata.get("issue_key").toString()));
+            }
+            if (metadata.get("version_id") != null) {
+                tags.add(versionTag(metadata.get("version_id").toString()));
+            }
+            if (PdfService.PDF_SOURCE.equals(metadata.get("source"))) {
+                tags.add(PDF_TAG);
+            }
+        }
+        return tags;
+    }
+
+    private record Entry(String question, float[] embedding, double norm, Set<String> identifiers,
+                         Set<String> tags, String answer, Instant expiresAt) {
+    }
+}
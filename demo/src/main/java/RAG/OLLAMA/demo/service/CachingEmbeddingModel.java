@@ -0,0 +1,85 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modèle d'embedding qui ne demande au modèle sous-jacent que les textes absents de
+ * l'{@link EmbeddingCache} : chunks Jira reconstruits à l'identique, PDF déjà envoyés,
+ * questions répétées.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+    private static final Logger logger = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final PipelineMetrics metrics;
+    private final String defaultModel;
+
+    /**
+     * @param delegate     Modèle qui calcule les embeddings
+     * @param defaultModel Nom du modèle utilisé quand la requête n'en précise pas
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache cache, PipelineMetrics metrics,
+                                 String defaultModel) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.defaultModel = defaultModel;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel() : defaultModel;
+        List<String> texts = request.getInstructions();
+
+        Map<String, float[]> embeddings = new HashMap<>(cache.findAll(model, texts));
+        List<String> missing = new ArrayList<>(new LinkedHashSet<>(texts));
+        missing.removeAll(embeddings.keySet());
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!missing.isEmpty()) {
+            EmbeddingResponse response = metrics.observe("embed",
+                    () -> delegate.call(new EmbeddingRequest(missing, request.getOptions())));
+            Map<String, float[]> computed = new HashMap<>();
+            for (Embedding embedding : response.getResults()) {
+                computed.put(missing.get(embedding.getIndex()), embedding.getOutput());
+            }
+            cache.putAll(model, computed);
+            embeddings.putAll(computed);
+            metadata = response.getMetadata();
+        }
+        metrics.counter("embedding.cache.lookups", "result", "hit").increment(texts.size() - missing.size());
+        metrics.counter("embedding.cache.lookups", "result", "miss").increment(missing.size());
+        logger.debug("Embeddings: {} texts, {} computed by {}", texts.size(), missing.size(), model);
+
+        List<Embedding> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            results.add(new Embedding(embeddings.get(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(results, metadata);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,130 @@
+package RAG.OLLAMA.demo.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Construit le contexte envoyé au LLM à partir des documents retrouvés, dans un budget de tokens :
+ * les documents sont pris du plus pertinent au moins pertinent, les espaces de mise en page sont
+ * compactés, les quasi-doublons sont écartés et le dernier document qui dépasse le budget est tronqué.
+ * Les tokens sont comptés avec l'encodage CL100K_BASE, le même que TokenTextSplitter.
+ */
+@Service
+public class ContextAssembler {
+    private static final Logger logger = LoggerFactory.getLogger(ContextAssembler.class);
+
+    private static final String SEPARATOR = "\n\n";
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final int maxTokens;
+    private final int minTruncatedTokens;
+    private final double duplicateThreshold;
+
+    public ContextAssembler(
+            @Value("${context.max-tokens:2000}") int maxTokens,
+            @Value("${context.min-truncated-tokens:64}") int minTruncatedTokens,
+            @Value("${context.duplicate-threshold:0.9}") double duplicateThreshold) {
+        this.maxTokens = maxTokens;
+        this.minTruncatedTokens = minTruncatedTokens;
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    /**
+     * @param documents     Documents retrouvés
+     * @param textExtractor Texte à utiliser pour chaque document
+     * @return Contexte d'au plus context.max-tokens tokens
+     */
+    public String assemble(List<Document> documents, Function<Document, String> textExtractor) {
+        // Tri stable : à score égal (ou absent), l'ordre de la recherche est conservé
+        List<Document> byRelevance = new ArrayList<>(documents);
+        byRelevance.sort(Comparator.comparing(
+                (Document document) -> document.getScore() != null ? document.getScore() : Double.NEGATIVE_INFINITY)
+                .reversed());
+
+        int separatorTokens = encoding.countTokens(SEPARATOR);
+        List<String> parts = new ArrayList<>();
+        List<Set<Integer>> kept = new ArrayList<>();
+        int usedTokens = 0;
+        int duplicates = 0;
+        int dropped = 0;
+
+        for (Document document : byRelevance) {
+            String text = compact(textExtractor.apply(document));
+            if (text.isEmpty()) {
+                continue;
+            }
+            IntArrayList tokens = encoding.encode(text);
+            Set<Integer> tokenSet = new HashSet<>(tokens.boxed());
+            if (kept.stream().anyMatch(other -> similarity(tokenSet, other) >= duplicateThreshold)) {
+                duplicates++;
+                continue;
+            }
+
+            int separator = parts.isEmpty() ? 0 : separatorTokens;
+            int remaining = maxTokens - usedTokens - separator;
+            if (tokens.size() <= remaining) {
+                parts.add(text);
+                kept.add(tokenSet);
+                usedTokens += separator + tokens.size();
+            } else if (remaining >= minTruncatedTokens) {
+                EncodingResult truncated = encoding.encode(text, remaining);
+                parts.add(encoding.decode(truncated.getTokens()));
+                kept.add(tokenSet);
+                usedTokens += separator + truncated.getTokens().size();
+            } else {
+                dropped++;
+            }
+        }
+
+        logger.info("Context: {} documents in {} tokens (budget {}), {} near-duplicates skipped, {} dropped",
+                parts.size(), usedTokens, maxTokens, duplicates, dropped);
+        return String.join(SEPARATOR, parts);
+    }
+
+    public int countTokens(String text) {
+        return encoding.countTokens(text);
+    }
+
+    /**
+     * Réduit les suites d'espaces produites par l'extraction avec mise en page, qui coûtent des tokens
+     */
+    static String compact(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replaceAll("[ \\t\\x0B\\f]+", " ")
+                .replaceAll(" ?\\n ?", "\n")
+                .replaceAll("\\n{3,}", "\n\n")
+                .trim();
+    }
+
+    private static double similarity(Set<Integer> a, Set<Integer> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        Set<Integer> smaller = a.size() <= b.size() ? a : b;
+        Set<Integer> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (Integer token : smaller) {
+            if (larger.contains(token)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
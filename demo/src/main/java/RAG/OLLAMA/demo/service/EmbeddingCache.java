@@ -0,0 +1,151 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache des embeddings, indexé par l'empreinte SHA-256 du modèle et du texte :
+ * <ul>
+ *     <li>un niveau en mémoire, LRU, borné par embedding.cache.max-entries</li>
+ *     <li>un niveau persistant dans PostgreSQL (vecteur stocké en float32 dans un bytea),
+ *     qui survit aux redémarrages et aux resynchronisations Jira</li>
+ * </ul>
+ * Une panne du niveau persistant n'empêche pas de calculer les embeddings.
+ */
+@Service
+public class EmbeddingCache {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean persistent;
+    private final Map<String, float[]> memory;
+
+    public EmbeddingCache(
+            JdbcTemplate jdbcTemplate,
+            @Value("${embedding.cache.max-entries:5000}") int maxEntries,
+            @Value("${embedding.cache.persistent:true}") boolean persistent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.persistent = persistent;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param model Nom du modèle d'embedding
+     * @param texts Textes à embedder
+     * @return Embedding déjà connu de chaque texte trouvé dans le cache, par texte
+     */
+    public Map<String, float[]> findAll(String model, Collection<String> texts) {
+        Map<String, float[]> found = new HashMap<>();
+        Map<String, String> missing = new HashMap<>();
+        synchronized (memory) {
+            for (String text : texts) {
+                String key = key(model, text);
+                float[] embedding = memory.get(key);
+                if (embedding != null) {
+                    found.put(text, embedding);
+                } else {
+                    missing.put(key, text);
+                }
+            }
+        }
+
+        if (persistent && !missing.isEmpty()) {
+            Map<String, float[]> stored = findStored(missing.keySet());
+            synchronized (memory) {
+                memory.putAll(stored);
+            }
+            stored.forEach((key, embedding) -> found.put(missing.get(key), embedding));
+        }
+        return found;
+    }
+
+    /**
+     * @param embeddings Embeddings calculés, par texte
+     */
+    public void putAll(String model, Map<String, float[]> embeddings) {
+        Map<String, float[]> byKey = new HashMap<>();
+        embeddings.forEach((text, embedding) -> byKey.put(key(model, text), embedding));
+        synchronized (memory) {
+            memory.putAll(byKey);
+        }
+
+        if (persistent && !byKey.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>();
+            byKey.forEach((key, embedding) -> rows.add(new Object[]{key, model, toBytes(embedding)}));
+            try {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO embedding_cache (cache_key, model, embedding) VALUES (?, ?, ?) " +
+                                "ON CONFLICT (cache_key) DO NOTHING",
+                        rows);
+            } catch (DataAccessException e) {
+                logger.warn("Could not store {} embeddings in the cache: {}", rows.size(), e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, float[]> findStored(Collection<String> keys) {
+        Map<String, float[]> stored = new HashMap<>();
+        try {
+            jdbcTemplate.query(
+                    connection -> {
+                        PreparedStatement statement = connection.prepareStatement(
+                                "SELECT cache_key, embedding FROM embedding_cache WHERE cache_key = ANY (?)");
+                        statement.setArray(1, connection.createArrayOf("bpchar", keys.toArray()));
+                        return statement;
+                    },
+                    rs -> {
+                        stored.put(rs.getString("cache_key"), toFloats(rs.getBytes("embedding")));
+                    });
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the embedding cache: {}", e.getMessage());
+        }
+        return stored;
+    }
+
+    static String key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] toBytes(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    private static float[] toFloats(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+}
@@ -0,0 +1,174 @@
+package RAG.OLLAMA.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Écrit des documents dans le vectorStore par lots, avec un nombre borné de lots
+ * envoyés en parallèle à l'embedding et une relance par lot en cas d'échec.
+ * Un lot en échec définitif n'empêche pas l'écriture des autres. Un lot refusé par le
+ * {@link LlmScheduler} n'est pas relancé : le refus remonte dans le {@link WriteResult}.
+ */
+@Service
+public class EmbeddingWriter {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingWriter.class);
+
+    private final VectorStore vectorStore;
+    private final PipelineMetrics metrics;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Semaphore inFlightBatches;
+    private final ExecutorService executor;
+
+    public EmbeddingWriter(
+            VectorStore vectorStore,
+            PipelineMetrics metrics,
+            @Value("${embedding.writer.batch-size:32}") int batchSize,
+            @Value("${embedding.writer.concurrency:2}") int concurrency,
+            @Value("${embedding.writer.max-attempts:3}") int maxAttempts,
+            @Value("${embedding.writer.retry-backoff:500ms}") Duration retryBackoff) {
+        this.vectorStore = vectorStore;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.inFlightBatches = new Semaphore(concurrency, true);
+        // inFlightBatches borne déjà les lots en cours : un thread virtuel par lot suffit
+        this.executor = metrics.propagating(Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("embedding-writer-", 1).factory()));
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Écrit tous les documents et attend la fin de tous les lots
+     *
+     * @param documents Documents à embedder et stocker
+     * @return Bilan de l'écriture (documents stockés et en échec)
+     */
+    public WriteResult write(List<Document> documents) throws InterruptedException {
+        List<CompletableFuture<WriteResult>> batches = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i += batchSize) {
+            batches.add(submit(documents.subList(i, Math.min(i + batchSize, documents.size()))));
+        }
+        return WriteResult.sum(batches);
+    }
+
+    /**
+     * Envoie un lot à l'embedding. Bloque tant que le nombre maximal de lots en cours est atteint,
+     * ce qui ralentit naturellement le producteur.
+     *
+     * @param batch Lot de documents
+     * @return Résultat du lot, qui ne se termine jamais en erreur
+     */
+    public CompletableFuture<WriteResult> submit(List<Document> batch) throws InterruptedException {
+        List<Document> documents = List.copyOf(batch);
+        inFlightBatches.acquire();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return writeWithRetry(documents);
+                } finally {
+                    inFlightBatches.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+    }
+
+    private WriteResult writeWithRetry(List<Document> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // Inclut l'embedding du lot (étape embed, mesurée à part)
+                metrics.observe("vector.insert", () -> vectorStore.add(batch));
+                return new WriteResult(batch.size(), 0);
+            } catch (RuntimeException e) {
+                LlmOverloadedException overloaded = overloadedCause(e);
+                if (overloaded != null) {
+                    // Relancer ajouterait de la charge pendant que le scheduler en retire
+                    logger.warn("Batch of {} documents rejected, language model overloaded", batch.size());
+                    return new WriteResult(0, batch.size(), overloaded);
+                }
+                if (attempt >= maxAttempts) {
+                    logger.error("Giving up on batch of {} documents after {} attempts: {}",
+                            batch.size(), attempt, e.getMessage());
+                    return new WriteResult(0, batch.size());
+                }
+                logger.warn("Batch of {} documents failed (attempt {}/{}): {}",
+                        batch.size(), attempt, maxAttempts, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoff.toMillis() * (1L << (attempt - 1)));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return new WriteResult(0, batch.size());
+                }
+            }
+        }
+    }
+
+    private static LlmOverloadedException overloadedCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LlmOverloadedException overloaded) {
+                return overloaded;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Bilan d'une écriture : nombre de documents stockés et nombre de documents abandonnés.
+     *
+     * @param overloaded Premier refus du {@link LlmScheduler}, ou null si aucun lot n'a été refusé
+     */
+    public record WriteResult(int stored, int failed, LlmOverloadedException overloaded) {
+
+        public WriteResult(int stored, int failed) {
+            this(stored, failed, null);
+        }
+
+        public boolean hasFailures() {
+            return failed > 0;
+        }
+
+        public WriteResult plus(WriteResult other) {
+            return new WriteResult(stored + other.stored, failed + other.failed,
+                    overloaded != null ? overloaded : other.overloaded);
+        }
+
+        static WriteResult sum(List<CompletableFuture<WriteResult>> batches) throws InterruptedException {
+            WriteResult total = new WriteResult(0, 0);
+            for (CompletableFuture<WriteResult> batch : batches) {
+                try {
+                    total = total.plus(batch.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Embedding batch failed unexpectedly", e.getCause());
+                }
+            }
+            return total;
+        }
+    }
+}
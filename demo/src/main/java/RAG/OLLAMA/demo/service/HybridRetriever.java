@@ -0,0 +1,181 @@
+package RAG.OLLAMA.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recherche hybride : recherche plein texte PostgreSQL (tsvector, configuration 'simple' pour
+ * garder tels quels les identifiants comme AIAG-3 ou 10000) et recherche vectorielle pgvector,
+ * fusionnées par Reciprocal Rank Fusion. Les deux recherches sont restreintes au même
+ * {@link RetrievalFilter}, appliqué dans le SQL (index GIN créés par la migration V1).
+ */
+@Service
+public class HybridRetriever {
+    private static final Logger logger = LoggerFactory.getLogger(HybridRetriever.class);
+
+    private static final Pattern TERM_PATTERN = Pattern.compile("[\\p{L}\\p{N}]+(?:[-._][\\p{L}\\p{N}]+)*");
+
+    // Mots trop fréquents pour aider la recherche plein texte ('simple' ne retire aucun mot vide)
+    private static final Set<String> STOP_WORDS = Set.of(
+            "les", "des", "est", "une", "que", "qui", "quoi", "dans", "pour", "par", "sur", "avec", "sont",
+            "quel", "quels", "quelle", "quelles", "the", "and", "are", "what", "which", "who", "for", "with",
+            "this", "that", "from", "about", "how", "does", "can");
+
+    private final VectorStore vectorStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PipelineMetrics metrics;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+    private final String tableName;
+    private final int topK;
+    private final int candidates;
+    private final double vectorWeight;
+    private final double lexicalWeight;
+    private final int rrfK;
+
+    public HybridRetriever(
+            VectorStore vectorStore,
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            PipelineMetrics metrics,
+            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName,
+            @Value("${retrieval.top-k:4}") int topK,
+            @Value("${retrieval.candidates:20}") int candidates,
+            @Value("${retrieval.vector-weight:1.0}") double vectorWeight,
+            @Value("${retrieval.lexical-weight:1.0}") double lexicalWeight,
+            @Value("${retrieval.rrf-k:60}") int rrfK) {
+        this.vectorStore = vectorStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.tableName = tableName;
+        this.topK = topK;
+        this.candidates = candidates;
+        this.vectorWeight = vectorWeight;
+        this.lexicalWeight = lexicalWeight;
+        this.rrfK = rrfK;
+    }
+
+    public List<Document> retrieve(String question) {
+        return retrieve(question, RetrievalFilter.NONE);
+    }
+
+    /**
+     * @param question Question de l'utilisateur
+     * @param scope    Périmètre de la recherche, appliqué aux deux recherches
+     * @return Les retrieval.top-k meilleurs documents, score = score RRF
+     */
+    public List<Document> retrieve(String question, RetrievalFilter scope) {
+        Filter.Expression filter = scope.toExpression();
+        List<Document> vectorResults = metrics.observe("retrieval.vector", () -> vectorStore.similaritySearch(
+                SearchRequest.builder()
+                        .query(question)
+                        .topK(candidates)
+                        .filterExpression(filter)
+                        .build()));
+        List<Document> lexicalResults = metrics.observe("retrieval.lexical", () -> lexicalSearch(question, filter));
+
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        addRanks(vectorResults, vectorWeight, documents, scores);
+        addRanks(lexicalResults, lexicalWeight, documents, scores);
+
+        List<Document> fused = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(entry -> {
+                    Document document = documents.get(entry.getKey());
+                    return Document.builder()
+                            .id(document.getId())
+                            .text(document.getText())
+                            .metadata(document.getMetadata())
+                            .score(entry.getValue())
+                            .build();
+                })
+                .toList();
+
+        logger.info("Hybrid retrieval: {} vector + {} lexical candidates -> {} documents (filter: {})",
+                vectorResults.size(), lexicalResults.size(), fused.size(), scope);
+        return fused;
+    }
+
+    private void addRanks(List<Document> results, double weight, Map<String, Document> documents,
+                          Map<String, Double> scores) {
+        for (int rank = 0; rank < results.size(); rank++) {
+            Document document = results.get(rank);
+            documents.putIfAbsent(document.getId(), document);
+            scores.merge(document.getId(), weight / (rrfK + rank + 1), Double::sum);
+        }
+    }
+
+    private List<Document> lexicalSearch(String question, Filter.Expression filter) {
+        String tsQuery = toTsQuery(question);
+        if (tsQuery.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = "SELECT id, content, metadata::text AS metadata, "
+                + "ts_rank_cd(to_tsvector('simple', content), query) AS rank "
+                + "FROM " + tableName + ", to_tsquery('simple', ?) query "
+                + "WHERE to_tsvector('simple', content) @@ query"
+                + (filter != null ? " AND metadata::jsonb @@ '" + toJsonPath(filter) + "'::jsonpath" : "")
+                + " ORDER BY rank DESC LIMIT ?";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> Document.builder()
+                        .id(rs.getString("id"))
+                        .text(rs.getString("content"))
+                        .metadata(parseMetadata(rs.getString("metadata")))
+                        .score(rs.getDouble("rank"))
+                        .build(),
+                tsQuery, candidates);
+    }
+
+    private String toJsonPath(Filter.Expression filter) {
+        return filterConverter.convertExpression(filter).replace("'", "''");
+    }
+
+    /**
+     * Termes de la question reliés par OU : un document qui contient l'identifiant cherché
+     * doit remonter même s'il ne contient pas les autres mots de la question.
+     */
+    static String toTsQuery(String question) {
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher matcher = TERM_PATTERN.matcher(question.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String term = matcher.group();
+            if ((term.length() > 2 || term.chars().allMatch(Character::isDigit)) && !STOP_WORDS.contains(term)) {
+                terms.add("'" + term + "'");
+            }
+        }
+        return String.join(" | ", terms);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parseMetadata(String json) {
+        try {
+            return json != null ? objectMapper.readValue(json, Map.class) : Map.of();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid document metadata", e);
+        }
+    }
+}
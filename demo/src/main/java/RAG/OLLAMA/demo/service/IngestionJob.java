@@ -0,0 +1,116 @@
+package RAG.OLLAMA.demo.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * État d'une ingestion de PDF lancée en arrière-plan. L'identifiant du job est
+ * l'identifiant du document (empreinte SHA-256), ce qui permet de poser des questions
+ * avec le même identifiant une fois l'ingestion terminée.
+ */
+public class IngestionJob implements PdfIngestionPipeline.ProgressListener {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String fileName;
+    private final Instant submittedAt;
+    private final AtomicInteger pagesParsed = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksFailed = new AtomicInteger();
+    private volatile Status status;
+    private volatile int totalPages;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    IngestionJob(String id, String fileName, Status status) {
+        this.id = id;
+        this.fileName = fileName;
+        this.status = status;
+        this.submittedAt = Instant.now();
+    }
+
+    static IngestionJob alreadyIngested(String id, int chunkCount) {
+        IngestionJob job = new IngestionJob(id, null, Status.COMPLETED);
+        job.chunksEmbedded.set(chunkCount);
+        job.finishedAt = job.submittedAt;
+        return job;
+    }
+
+    @Override
+    public void pagesDiscovered(int pageCount) {
+        this.totalPages = pageCount;
+    }
+
+    @Override
+    public void pageParsed(int pageNumber) {
+        pagesParsed.incrementAndGet();
+    }
+
+    @Override
+    public void chunksStored(int stored, int failed) {
+        chunksEmbedded.addAndGet(stored);
+        chunksFailed.addAndGet(failed);
+    }
+
+    void markRunning() {
+        this.status = Status.RUNNING;
+    }
+
+    void markCompleted() {
+        this.finishedAt = Instant.now();
+        this.status = Status.COMPLETED;
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public int getPagesParsed() {
+        return pagesParsed.get();
+    }
+
+    public int getChunksEmbedded() {
+        return chunksEmbedded.get();
+    }
+
+    public int getChunksFailed() {
+        return chunksFailed.get();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+}
@@ -0,0 +1,129 @@
+package RAG.OLLAMA.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lance l'ingestion des PDF sur un pool dédié et conserve leur état pour le suivi.
+ * Le fichier est écrit sur disque pendant la requête HTTP (le fichier multipart
+ * disparaît avec elle), le reste du traitement est asynchrone.
+ */
+@Service
+public class IngestionJobService {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final PdfService pdfService;
+    private final PdfUploadStaging uploadStaging;
+    private final PdfIngestionRegistry ingestionRegistry;
+    private final Duration retention;
+    private final ExecutorService executor;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(
+            PdfService pdfService,
+            PdfUploadStaging uploadStaging,
+            PdfIngestionRegistry ingestionRegistry,
+            PipelineMetrics metrics,
+            @Value("${ingestion.jobs.concurrency:2}") int concurrency,
+            @Value("${ingestion.jobs.retention:1h}") Duration retention) {
+        this.pdfService = pdfService;
+        this.uploadStaging = uploadStaging;
+        this.ingestionRegistry = ingestionRegistry;
+        this.retention = retention;
+        // Le job garde le trace id de la requête d'upload
+        this.executor = metrics.propagating(new BoundedVirtualExecutor("ingestion-job-", concurrency));
+    }
+
+    /**
+     * Prépare le fichier et lance son ingestion en arrière-plan
+     *
+     * @param file PDF envoyé
+     * @return Job créé, ou job existant si le même PDF est déjà en cours ou ingéré
+     */
+    public IngestionJob submit(MultipartFile file) throws IOException {
+        evictFinishedJobs();
+
+        PdfUploadStaging.StagedUpload upload = uploadStaging.stage(file);
+        String documentId = upload.contentHash();
+
+        Integer chunkCount = ingestionRegistry.findChunkCount(documentId);
+        if (chunkCount != null) {
+            upload.close();
+            return IngestionJob.alreadyIngested(documentId, chunkCount);
+        }
+
+        IngestionJob job = new IngestionJob(documentId, upload.originalFilename(), IngestionJob.Status.QUEUED);
+        IngestionJob existing = jobs.putIfAbsent(documentId, job);
+        if (existing != null && !existing.isFinished()) {
+            // Le même PDF est déjà en cours d'ingestion
+            upload.close();
+            return existing;
+        }
+        if (existing != null) {
+            jobs.put(documentId, job);
+        }
+
+        try {
+            executor.execute(() -> run(job, upload));
+        } catch (RuntimeException e) {
+            upload.close();
+            job.markFailed(e.getMessage());
+            throw e;
+        }
+        logger.info("Queued ingestion job {} for {}", documentId, upload.originalFilename());
+        return job;
+    }
+
+    /**
+     * @param id Identifiant du job (identifiant du document)
+     * @return État du job, ou null si inconnu
+     */
+    public IngestionJob getJob(String id) {
+        IngestionJob job = jobs.get(id);
+        if (job != null) {
+            return job;
+        }
+        // Job expiré ou document ingéré avant un redémarrage
+        Integer chunkCount = ingestionRegistry.findChunkCount(id);
+        return chunkCount != null ? IngestionJob.alreadyIngested(id, chunkCount) : null;
+    }
+
+    private void run(IngestionJob job, PdfUploadStaging.StagedUpload upload) {
+        // Personne n'attend la réponse : les embeddings du job passent après ceux des questions
+        LlmScheduler.withPriority(LlmScheduler.Priority.BACKGROUND, () -> ingest(job, upload));
+    }
+
+    private void ingest(IngestionJob job, PdfUploadStaging.StagedUpload upload) {
+        job.markRunning();
+        try (upload) {
+            pdfService.ingestDocument(upload, job);
+            job.markCompleted();
+            logger.info("Ingestion job {} completed: {} pages, {} chunks",
+                    job.getId(), job.getPagesParsed(), job.getChunksEmbedded());
+        } catch (Exception e) {
+            logger.error("Ingestion job {} failed", job.getId(), e);
+            job.markFailed(e.getMessage());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,136 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Premier aiguillage d'une question, sans appel au LLM :
+ * <ul>
+ *     <li>salutations, remerciements, acquittements (message entier) : réponse toute faite</li>
+ *     <li>identifiant de ticket (AIAG-3), d'un projet connu si le catalogue Jira est chargé : chemin Jira</li>
+ *     <li>tout le reste, même court : question sur les documents (RAG)</li>
+ * </ul>
+ * Le nombre de questions par chemin est compté (interaction.routes).
+ */
+@Service
+public class InteractionRouter {
+    private static final Logger logger = LoggerFactory.getLogger(InteractionRouter.class);
+
+    // Clé de projet Jira (lettre, puis lettres, chiffres ou _) et numéro, en mot entier
+    private static final Pattern TICKET_PATTERN = Pattern.compile("\\b([A-Z][A-Z0-9_]+)-\\d+\\b");
+    private static final Pattern NOT_WORD_PATTERN = Pattern.compile("[^\\p{L}\\p{N}']+");
+
+    private static final String GREETING = "Hello! Ask me a question about your documents or Jira tickets.";
+    private static final String GREETING_FR = "Bonjour ! Posez-moi une question sur vos documents ou vos tickets Jira.";
+    private static final String THANKS = "You're welcome! Anything else?";
+    private static final String THANKS_FR = "Avec plaisir ! Autre chose ?";
+    private static final String ACKNOWLEDGEMENT = "Great. Anything else I can help with?";
+    private static final String ACKNOWLEDGEMENT_FR = "Parfait. Puis-je vous aider pour autre chose ?";
+    private static final String GOODBYE = "Goodbye!";
+    private static final String GOODBYE_FR = "Au revoir !";
+    private static final String EMPTY = "Please ask a question about your documents or Jira tickets.";
+
+    // Messages entiers, normalisés (minuscules, ponctuation retirée)
+    private static final Map<String, String> CANNED_REPLIES = Map.ofEntries(
+            Map.entry("hi", GREETING),
+            Map.entry("hello", GREETING),
+            Map.entry("hey", GREETING),
+            Map.entry("hi there", GREETING),
+            Map.entry("hello there", GREETING),
+            Map.entry("good morning", GREETING),
+            Map.entry("good afternoon", GREETING),
+            Map.entry("good evening", GREETING),
+            Map.entry("bonjour", GREETING_FR),
+            Map.entry("bonsoir", GREETING_FR),
+            Map.entry("salut", GREETING_FR),
+            Map.entry("coucou", GREETING_FR),
+            Map.entry("thanks", THANKS),
+            Map.entry("thank you", THANKS),
+            Map.entry("thx", THANKS),
+            Map.entry("thanks a lot", THANKS),
+            Map.entry("merci", THANKS_FR),
+            Map.entry("merci beaucoup", THANKS_FR),
+            Map.entry("ok", ACKNOWLEDGEMENT),
+            Map.entry("okay", ACKNOWLEDGEMENT),
+            Map.entry("cool", ACKNOWLEDGEMENT),
+            Map.entry("great", ACKNOWLEDGEMENT),
+            Map.entry("nice", ACKNOWLEDGEMENT),
+            Map.entry("got it", ACKNOWLEDGEMENT),
+            Map.entry("d'accord", ACKNOWLEDGEMENT_FR),
+            Map.entry("parfait", ACKNOWLEDGEMENT_FR),
+            Map.entry("super", ACKNOWLEDGEMENT_FR),
+            Map.entry("bye", GOODBYE),
+            Map.entry("goodbye", GOODBYE),
+            Map.entry("see you", GOODBYE),
+            Map.entry("au revoir", GOODBYE_FR),
+            Map.entry("à bientôt", GOODBYE_FR));
+
+    public enum Route {
+        /** Réponse toute faite, sans LLM */
+        CANNED,
+        /** Identifiant de ticket dans la question */
+        JIRA,
+        /** Question sur les documents */
+        RAG
+    }
+
+    /**
+     * @param reply   Réponse toute faite (chemin CANNED), sinon null
+     * @param tickets Tickets cités dans la question (chemin JIRA), à transmettre à {@link JiraPromptHandler}
+     */
+    public record Decision(Route route, String reply, List<String> tickets) {
+    }
+
+    private final JiraIntentClassifier intentClassifier;
+    private final Map<Route, Counter> routeCounts = new EnumMap<>(Route.class);
+
+    public InteractionRouter(JiraIntentClassifier intentClassifier, PipelineMetrics metrics) {
+        this.intentClassifier = intentClassifier;
+        for (Route route : Route.values()) {
+            routeCounts.put(route, metrics.counter("interaction.routes", "route", route.name()));
+        }
+    }
+
+    public Decision route(String question) {
+        Decision decision = decide(question);
+        routeCounts.get(decision.route()).increment();
+        logger.info("Interaction route {}", decision.route());
+        return decision;
+    }
+
+    private Decision decide(String question) {
+        String normalized = NOT_WORD_PATTERN.matcher(question.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        if (normalized.isEmpty()) {
+            return new Decision(Route.CANNED, EMPTY, List.of());
+        }
+        String reply = CANNED_REPLIES.get(normalized);
+        if (reply != null) {
+            return new Decision(Route.CANNED, reply, List.of());
+        }
+        List<String> tickets = ticketKeys(question);
+        if (!tickets.isEmpty()) {
+            return new Decision(Route.JIRA, null, tickets);
+        }
+        return new Decision(Route.RAG, null, List.of());
+    }
+
+    /**
+     * @return Tickets cités dans la question ; une fois le catalogue chargé, seulement ceux des projets connus
+     * (une référence comme COVID-19 n'est pas un ticket)
+     */
+    public List<String> ticketKeys(String question) {
+        return TICKET_PATTERN.matcher(question).results()
+                .filter(match -> intentClassifier.isProjectKey(match.group(1)))
+                .map(MatchResult::group)
+                .toList();
+    }
+}
@@ -0,0 +1,307 @@
+package RAG.OLLAMA.demo.service;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import io.micrometer.observation.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Protège l'application d'un Jira lent ou indisponible. Chaque appel passe par :
+ * <ul>
+ *     <li>un circuit breaker : après jira.client.circuit.failure-threshold échecs consécutifs,
+ *     les appels échouent immédiatement pendant jira.client.circuit.open-duration, puis un appel d'essai est laissé passer</li>
+ *     <li>une limite de débit (seau à jetons) vers Jira</li>
+ *     <li>un bulkhead : nombre maximal de requêtes Jira simultanées, aligné sur le pool de connexions du client</li>
+ *     <li>un délai maximal d'attente de la réponse, au lieu d'un claim() sans limite</li>
+ * </ul>
+ * Les erreurs 4xx renvoyées par Jira (404, droits...) ne comptent pas comme des pannes, les 5xx si.
+ * Le pool de connexions et les délais de connexion et de lecture du client sont fixés par {@link MyJiraClient}.
+ * <p>
+ * Chaque requête envoyée est une Observation "jira.client.requests" (tag endpoint : premier mot
+ * de l'opération), les requêtes refusées sont comptées dans "jira.client.rejected".
+ */
+@Service
+public class JiraCallGuard {
+    private static final Logger logger = LoggerFactory.getLogger(JiraCallGuard.class);
+
+    private enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final PipelineMetrics metrics;
+    private final Duration requestTimeout;
+    private final Duration acquireTimeout;
+    private final Semaphore bulkhead;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final double permitsPerSecond;
+
+    private final Object circuitLock = new Object();
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean trialInFlight;
+
+    private final Object bucketLock = new Object();
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public JiraCallGuard(
+            PipelineMetrics metrics,
+            @Value("${jira.client.request-timeout:10s}") Duration requestTimeout,
+            @Value("${jira.client.acquire-timeout:2s}") Duration acquireTimeout,
+            @Value("${jira.client.max-concurrent-requests:${jira.client.max-connections:20}}") int maxConcurrentRequests,
+            @Value("${jira.client.rate-limit:20}") double permitsPerSecond,
+            @Value("${jira.client.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${jira.client.circuit.open-duration:30s}") Duration openDuration) {
+        this.metrics = metrics;
+        this.requestTimeout = requestTimeout;
+        this.acquireTimeout = acquireTimeout;
+        this.bulkhead = new Semaphore(maxConcurrentRequests, true);
+        this.permitsPerSecond = permitsPerSecond;
+        this.tokens = permitsPerSecond;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Envoie une requête et attend sa réponse
+     *
+     * @param operation Nom de l'opération, pour les logs
+     * @param request   Envoi de la requête (par exemple un appel JRJC qui renvoie une Promise)
+     */
+    public <T> T call(String operation, Supplier<? extends Future<T>> request) {
+        return begin(operation, request).await();
+    }
+
+    /**
+     * Envoie une requête sans attendre sa réponse, pour en avoir plusieurs en cours.
+     * La réponse doit ensuite être lue avec {@link GuardedCall#await()} ou abandonnée avec
+     * {@link GuardedCall#cancel()}, ce qui libère la place occupée dans le bulkhead.
+     */
+    public <T> GuardedCall<T> begin(String operation, Supplier<? extends Future<T>> request) {
+        String endpoint = operation.split(" ", 2)[0];
+        boolean trial;
+        try {
+            trial = allowRequest(operation);
+        } catch (JiraUnavailableException e) {
+            metrics.counter("jira.client.rejected", "endpoint", endpoint, "reason", "circuit-open").increment();
+            throw e;
+        }
+        try {
+            if (!acquireToken()) {
+                metrics.counter("jira.client.rejected", "endpoint", endpoint, "reason", "rate-limit").increment();
+                throw new JiraUnavailableException("JIRA rate limit reached, " + operation + " not sent");
+            }
+            if (!bulkhead.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                metrics.counter("jira.client.rejected", "endpoint", endpoint, "reason", "bulkhead").increment();
+                throw new JiraUnavailableException("Too many concurrent JIRA requests, " + operation + " not sent");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endTrial(trial);
+            throw new JiraUnavailableException("Interrupted before sending " + operation, e);
+        } catch (RuntimeException e) {
+            endTrial(trial);
+            throw e;
+        }
+
+        Observation observation = metrics.observation("jira.client.requests")
+                .contextualName("jira " + endpoint)
+                .lowCardinalityKeyValue("endpoint", endpoint)
+                .highCardinalityKeyValue("operation", operation)
+                .start();
+        try {
+            return new GuardedCall<>(operation, request.get(), trial, observation);
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            observation.error(e);
+            observation.stop();
+            onFailure(operation, trial, e);
+            throw e;
+        }
+    }
+
+    public boolean isCircuitOpen() {
+        synchronized (circuitLock) {
+            return circuitState == CircuitState.OPEN && System.nanoTime() < openUntilNanos;
+        }
+    }
+
+    /**
+     * @return true si cet appel est l'appel d'essai d'un circuit semi-ouvert
+     */
+    private boolean allowRequest(String operation) {
+        synchronized (circuitLock) {
+            if (circuitState == CircuitState.CLOSED) {
+                return false;
+            }
+            if (circuitState == CircuitState.OPEN && System.nanoTime() >= openUntilNanos) {
+                circuitState = CircuitState.HALF_OPEN;
+            }
+            if (circuitState == CircuitState.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                return true;
+            }
+        }
+        throw new JiraUnavailableException("JIRA circuit is open, " + operation + " not sent");
+    }
+
+    private void endTrial(boolean trial) {
+        if (trial) {
+            synchronized (circuitLock) {
+                trialInFlight = false;
+            }
+        }
+    }
+
+    private void onSuccess(boolean trial) {
+        synchronized (circuitLock) {
+            if (trial) {
+                trialInFlight = false;
+            }
+            if (circuitState != CircuitState.CLOSED) {
+                logger.info("JIRA answered again, closing circuit");
+            }
+            consecutiveFailures = 0;
+            circuitState = CircuitState.CLOSED;
+        }
+    }
+
+    private void onFailure(String operation, boolean trial, Throwable error) {
+        synchronized (circuitLock) {
+            if (trial) {
+                trialInFlight = false;
+            }
+            consecutiveFailures++;
+            if (trial || consecutiveFailures >= failureThreshold) {
+                circuitState = CircuitState.OPEN;
+                openUntilNanos = System.nanoTime() + openDuration.toNanos();
+                logger.error("JIRA circuit opened for {} after {} consecutive failures (last: {} - {})",
+                        openDuration, consecutiveFailures, operation, error.getMessage());
+            }
+        }
+    }
+
+    private boolean acquireToken() throws InterruptedException {
+        long deadline = System.nanoTime() + acquireTimeout.toNanos();
+        while (true) {
+            long waitNanos;
+            synchronized (bucketLock) {
+                long now = System.nanoTime();
+                tokens = Math.min(permitsPerSecond, tokens + (now - lastRefillNanos) * permitsPerSecond / 1e9);
+                lastRefillNanos = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) ((1 - tokens) * 1e9 / permitsPerSecond);
+            }
+            if (System.nanoTime() + waitNanos > deadline) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * @return true si Jira a bien répondu avec une erreur du client (ticket inexistant, droits...) :
+     * un 5xx (Jira ou son proxy), une réponse sans statut ou une erreur d'I/O est une panne
+     */
+    private static boolean isJiraAnswer(Throwable error) {
+        if (!(error instanceof RestClientException restError)) {
+            return false;
+        }
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return false;
+            }
+        }
+        var statusCode = restError.getStatusCode();
+        return statusCode.isPresent() && statusCode.get() >= 400 && statusCode.get() < 500;
+    }
+
+    /**
+     * Requête Jira envoyée dont la réponse n'a pas encore été lue
+     */
+    public final class GuardedCall<T> {
+        private final String operation;
+        private final Future<T> future;
+        private final boolean trial;
+        private final Observation observation;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private GuardedCall(String operation, Future<T> future, boolean trial, Observation observation) {
+            this.operation = operation;
+            this.future = future;
+            this.trial = trial;
+            this.observation = observation;
+        }
+
+        public T await() {
+            try {
+                T result = future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                finish(null);
+                onSuccess(trial);
+                return result;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                finish(e);
+                onFailure(operation, trial, e);
+                throw new JiraUnavailableException("JIRA did not answer " + operation + " within " + requestTimeout, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new JiraUnavailableException("Interrupted while waiting for " + operation, e);
+            } catch (CancellationException e) {
+                finish(e);
+                endTrial(trial);
+                throw new JiraUnavailableException(operation + " was cancelled", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                finish(cause);
+                if (isJiraAnswer(cause)) {
+                    onSuccess(trial);
+                    throw (RestClientException) cause;
+                }
+                onFailure(operation, trial, cause);
+                throw new JiraUnavailableException("JIRA call " + operation + " failed", cause);
+            }
+        }
+
+        /**
+         * Abandonne la requête si sa réponse n'a pas été lue
+         */
+        public void cancel() {
+            if (finished.compareAndSet(false, true)) {
+                future.cancel(true);
+                bulkhead.release();
+                observation.stop();
+                endTrial(trial);
+            }
+        }
+
+        private void finish(Throwable error) {
+            if (finished.compareAndSet(false, true)) {
+                bulkhead.release();
+                if (error != null) {
+                    observation.error(error);
+                }
+                observation.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package RAG.OLLAMA.demo.service;
+
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.httpclient.apache.httpcomponents.DefaultHttpClientFactory;
+import com.atlassian.httpclient.api.HttpClient;
+import com.atlassian.httpclient.api.factory.HttpClientOptions;
+import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AtlassianHttpClientDecorator;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
+import com.atlassian.sal.api.ApplicationProperties;
+import com.atlassian.sal.api.UrlMode;
+import com.atlassian.sal.api.executor.ThreadLocalContextManager;
+
+import java.io.File;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client HTTP de JRJC avec un pool de connexions et des délais configurés.
+ * AsynchronousJiraRestClientFactory crée son client avec les HttpClientOptions par défaut :
+ * on reprend ici sa construction (DefaultHttpClientFactory, authentification basique) en
+ * fournissant nos options.
+ */
+final class JiraHttpClientFactory {
+
+    private JiraHttpClientFactory() {
+    }
+
+    /**
+     * @param maxConnections Taille du pool de connexions vers Jira
+     * @param connectTimeout Délai d'établissement d'une connexion
+     * @param socketTimeout  Délai maximal sans données reçues pendant une lecture
+     */
+    static DisposableHttpClient create(URI serverUri, String username, String password,
+                                       int maxConnections, Duration connectTimeout, Duration socketTimeout) {
+        HttpClientOptions options = new HttpClientOptions();
+        options.setMaxTotalConnections(maxConnections);
+        options.setMaxConnectionsPerHost(maxConnections);
+        options.setConnectionTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        options.setSocketTimeout(socketTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        DefaultHttpClientFactory clientFactory = new DefaultHttpClientFactory(
+                new NoOpEventPublisher(), new ClientApplicationProperties(serverUri), new NoOpThreadLocalContextManager());
+        HttpClient httpClient = clientFactory.create(options);
+
+        return new AtlassianHttpClientDecorator(httpClient, new BasicHttpAuthenticationHandler(username, password)) {
+            @Override
+            public void destroy() throws Exception {
+                clientFactory.dispose(httpClient);
+            }
+        };
+    }
+
+    private static final class NoOpEventPublisher implements EventPublisher {
+        @Override
+        public void publish(Object event) {
+        }
+
+        @Override
+        public void register(Object listener) {
+        }
+
+        @Override
+        public void unregister(Object listener) {
+        }
+
+        @Override
+        public void unregisterAll() {
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final class NoOpThreadLocalContextManager implements ThreadLocalContextManager {
+        @Override
+        public Object getThreadLocalContext() {
+            return null;
+        }
+
+        @Override
+        public void setThreadLocalContext(Object context) {
+        }
+
+        @Override
+        public void clearThreadLocalContext() {
+        }
+    }
+
+    /**
+     * Propriétés d'application attendues par DefaultHttpClientFactory (nom, plateforme et version de JRJC)
+     */
+    private static final class ClientApplicationProperties implements ApplicationProperties {
+        private final String baseUrl;
+
+        private ClientApplicationProperties(URI serverUri) {
+            this.baseUrl = serverUri.getPath();
+        }
+
+        @Override
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        @Override
+        public String getBaseUrl(UrlMode urlMode) {
+            return baseUrl;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Atlassian JIRA Rest Java Client";
+        }
+
+        @Override
+        public String getPlatformId() {
+            return ApplicationProperties.PLATFORM_JIRA;
+        }
+
+        @Override
+        public String getVersion() {
+            return "4.0.0";
+        }
+
+        @Override
+        public Date getBuildDate() {
+            // Date de build inconnue hors d'une application Atlassian
+            return new Date(0);
+        }
+
+        @Override
+        public String getBuildNumber() {
+            return "0";
+        }
+
+        @Override
+        public File getHomeDirectory() {
+            return new File(".");
+        }
+
+        @Override
+        public String getPropertyValue(String key) {
+            // Aucune propriété d'application : le client HTTP n'en lit pas
+            return null;
+        }
+    }
+}
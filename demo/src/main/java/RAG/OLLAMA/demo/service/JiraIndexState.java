@@ -0,0 +1,122 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * État de l'index Jira : pour chaque version ou ticket synchronisé (le "propriétaire"),
+ * l'identifiant stable et l'empreinte de chaque document stocké dans vector_store. Cela permet
+ * de ne ré-embedder que ce qui a changé et de supprimer les documents qui n'existent plus.
+ */
+@Service
+public class JiraIndexState {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JiraIndexState(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param owner Tag de la version ou du ticket
+     * @return Date de la dernière synchronisation réussie, ou null si aucune ou si une synchronisation est à reprendre
+     */
+    public Instant findLastSync(String owner) {
+        List<Timestamp> syncs = jdbcTemplate.queryForList(
+                "SELECT synced_at FROM jira_index_owner WHERE owner = ? AND NOT pending", Timestamp.class, owner);
+        return syncs.isEmpty() || syncs.get(0) == null ? null : syncs.get(0).toInstant();
+    }
+
+    /**
+     * @return Propriétaires synchronisés ou à reprendre, ceux à reprendre en premier
+     */
+    public List<String> findOwners() {
+        return jdbcTemplate.queryForList(
+                "SELECT owner FROM jira_index_owner ORDER BY pending DESC, synced_at NULLS FIRST", String.class);
+    }
+
+    /**
+     * Note qu'une synchronisation a échoué (Jira indisponible, embeddings en échec) : le propriétaire
+     * sera repris par la prochaine resynchronisation de fond, même s'il n'a jamais été synchronisé.
+     */
+    public void markPending(String owner) {
+        jdbcTemplate.update(
+                "INSERT INTO jira_index_owner (owner, synced_at, pending) VALUES (?, NULL, true) " +
+                        "ON CONFLICT (owner) DO UPDATE SET pending = true",
+                owner);
+    }
+
+    /**
+     * @return Empreinte de chaque document actuellement indexé pour ce propriétaire
+     */
+    public Map<String, String> findFingerprints(String owner) {
+        Map<String, String> fingerprints = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT document_id, fingerprint FROM jira_index_document WHERE owner = ?",
+                rs -> {
+                    fingerprints.put(rs.getString("document_id"), rs.getString("fingerprint"));
+                },
+                owner);
+        return fingerprints;
+    }
+
+    /**
+     * Enregistre les documents indexés et retire ceux qui ne font plus partie du propriétaire.
+     *
+     * @param owner     Tag de la version ou du ticket
+     * @param documents Documents actuellement indexés
+     * @param complete  true si tous les documents sont à jour, ce qui date la synchronisation ;
+     *                  sinon le propriétaire est marqué à reprendre
+     */
+    @Transactional
+    public void save(String owner, List<IndexedDocument> documents, boolean complete) {
+        List<Object[]> rows = new ArrayList<>();
+        for (IndexedDocument document : documents) {
+            rows.add(new Object[]{
+                    UUID.fromString(document.id()), owner, document.fingerprint()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO jira_index_document (document_id, owner, fingerprint) " +
+                        "VALUES (?, ?, ?) ON CONFLICT (document_id) DO UPDATE SET " +
+                        "owner = EXCLUDED.owner, fingerprint = EXCLUDED.fingerprint",
+                rows);
+
+        UUID[] ids = documents.stream().map(document -> UUID.fromString(document.id())).toArray(UUID[]::new);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM jira_index_document WHERE owner = ? AND NOT (document_id = ANY (?))");
+            statement.setString(1, owner);
+            statement.setArray(2, connection.createArrayOf("uuid", ids));
+            return statement;
+        });
+
+        if (complete) {
+            jdbcTemplate.update(
+                    "INSERT INTO jira_index_owner (owner, synced_at, pending) VALUES (?, now(), false) " +
+                            "ON CONFLICT (owner) DO UPDATE SET synced_at = EXCLUDED.synced_at, pending = false",
+                    owner);
+        } else {
+            markPending(owner);
+        }
+    }
+
+    /**
+     * Document Jira prêt à être indexé
+     *
+     * @param id          Identifiant stable du document dans vector_store
+     * @param fingerprint Empreinte SHA-256 du texte et des métadonnées
+     */
+    public record IndexedDocument(String id, String fingerprint, Document document) {
+    }
+}
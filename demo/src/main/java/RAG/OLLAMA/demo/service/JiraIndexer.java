@@ -0,0 +1,426 @@
+package RAG.OLLAMA.demo.service;
+
+import com.atlassian.jira.rest.client.api.domain.Comment;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.Version;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexe les versions et tickets Jira dans le vectorStore de façon incrémentale.
+ * Chaque document (version, résumé de version, issue, ticket, commentaire) a un identifiant
+ * stable dérivé de sa clé Jira ; seuls les documents dont le contenu a changé depuis la
+ * dernière synchronisation sont ré-embeddés, et ceux qui ont disparu de Jira sont supprimés.
+ * Les versions et tickets sont récupérés en parallèle sur un pool borné, et ceux déjà indexés
+ * sont resynchronisés périodiquement en arrière-plan, sur un pool plus petit et distinct : les
+ * questions n'attendent pas derrière la resynchronisation.
+ */
+@Service
+public class JiraIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(JiraIndexer.class);
+
+    private static final String VERSION_PREFIX = AnswerCache.versionTag("");
+    private static final String TICKET_PREFIX = AnswerCache.ticketTag("");
+    // Empreinte d'un document nouveau dont l'embedding a peut-être échoué : ne correspond à aucun
+    // contenu, le document est ré-embeddé à la prochaine synchronisation ou supprimé s'il a disparu
+    private static final String PENDING_FINGERPRINT = "0".repeat(64);
+
+    private final MyJiraClient jiraClient;
+    private final JiraVersionCatalog versionCatalog;
+    private final JiraCallGuard jiraCallGuard;
+    private final VectorStore vectorStore;
+    private final EmbeddingWriter embeddingWriter;
+    private final JiraIndexState indexState;
+    private final AnswerCache answerCache;
+    private final Duration freshness;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService backgroundExecutor;
+
+    public JiraIndexer(
+            MyJiraClient jiraClient,
+            JiraVersionCatalog versionCatalog,
+            JiraCallGuard jiraCallGuard,
+            VectorStore vectorStore,
+            EmbeddingWriter embeddingWriter,
+            JiraIndexState indexState,
+            AnswerCache answerCache,
+            PipelineMetrics metrics,
+            @Value("${jira.sync.freshness:10m}") Duration freshness,
+            @Value("${jira.fetch.concurrency:8}") int fetchConcurrency,
+            @Value("${jira.sync.concurrency:2}") int backgroundConcurrency) {
+        this.jiraClient = jiraClient;
+        this.versionCatalog = versionCatalog;
+        this.jiraCallGuard = jiraCallGuard;
+        this.vectorStore = vectorStore;
+        this.embeddingWriter = embeddingWriter;
+        this.indexState = indexState;
+        this.answerCache = answerCache;
+        this.freshness = freshness;
+        this.fetchExecutor = metrics.propagating(new BoundedVirtualExecutor("jira-fetch-", fetchConcurrency));
+        this.backgroundExecutor = metrics.propagating(new BoundedVirtualExecutor("jira-sync-", backgroundConcurrency));
+    }
+
+    /**
+     * Indexe les versions et tickets qui ne l'ont pas été récemment. Utilisé pendant une question :
+     * les données déjà fraîches ne coûtent ni appel Jira ni embedding.
+     */
+    public void ensureIndexed(List<String> versions, List<String> tickets) {
+        if (jiraCallGuard.isCircuitOpen()) {
+            // Jira est indisponible : on répond avec les données déjà indexées
+            logger.warn("JIRA circuit open, answering from indexed data for versions {} and tickets {}", versions, tickets);
+            return;
+        }
+        syncConcurrently(fetchExecutor,
+                versions.stream().filter(versionId -> isStale(AnswerCache.versionTag(versionId))).toList(),
+                tickets.stream().filter(ticketKey -> isStale(AnswerCache.ticketTag(ticketKey))).toList());
+    }
+
+    /**
+     * Resynchronise toutes les versions et tous les tickets déjà indexés, ainsi que ceux dont la
+     * dernière synchronisation a échoué ou est restée incomplète
+     */
+    @Scheduled(fixedDelayString = "${jira.sync.interval:15m}", initialDelayString = "${jira.sync.interval:15m}")
+    public void syncAll() {
+        if (jiraCallGuard.isCircuitOpen()) {
+            logger.warn("JIRA circuit open, skipping background JIRA sync");
+            return;
+        }
+        List<String> owners = indexState.findOwners();
+        logger.info("Background JIRA sync of {} versions/tickets", owners.size());
+        List<String> versions = new ArrayList<>();
+        List<String> tickets = new ArrayList<>();
+        for (String owner : owners) {
+            if (owner.startsWith(VERSION_PREFIX)) {
+                versions.add(owner.substring(VERSION_PREFIX.length()));
+            } else if (owner.startsWith(TICKET_PREFIX)) {
+                tickets.add(owner.substring(TICKET_PREFIX.length()));
+            }
+        }
+        // Resynchronisation de fond : ses embeddings passent après ceux des questions
+        LlmScheduler.withPriority(LlmScheduler.Priority.BACKGROUND, () -> syncConcurrently(backgroundExecutor, versions, tickets));
+    }
+
+    /**
+     * Synchronise toutes les versions et tous les tickets en parallèle, dans la limite des permis
+     * de l'executor (jira.fetch.concurrency pour les questions, jira.sync.concurrency pour la
+     * resynchronisation de fond), et attend la fin de toutes les synchronisations.
+     */
+    private void syncConcurrently(ExecutorService executor, List<String> versions, List<String> tickets) {
+        List<Future<?>> tasks = new ArrayList<>();
+        for (String versionId : versions) {
+            tasks.add(executor.submit(() -> syncVersion(versionId)));
+        }
+        for (String ticketKey : tickets) {
+            tasks.add(executor.submit(() -> syncTicket(ticketKey)));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.forEach(pending -> pending.cancel(true));
+                logger.error("Interrupted while syncing JIRA data");
+                return;
+            } catch (ExecutionException e) {
+                // syncVersion / syncTicket journalisent leurs propres erreurs ; les autres tâches continuent
+                logger.error("Unexpected error while syncing JIRA data", e.getCause());
+            }
+        }
+    }
+
+    private boolean isStale(String owner) {
+        Instant lastSync = indexState.findLastSync(owner);
+        return lastSync == null || lastSync.isBefore(Instant.now().minus(freshness));
+    }
+
+    public void syncVersion(String versionId) {
+        try {
+            IndexUpdate update = new IndexUpdate(AnswerCache.versionTag(versionId));
+
+            // Get version metadata
+            Version version = versionCatalog.getVersion(versionId);
+
+            StringBuilder versionMetadata = new StringBuilder();
+            versionMetadata.append("Version: ").append(version.getName()).append("\n")
+                    .append("Description: ").append(version.getDescription() != null ? version.getDescription() : "N/A").append("\n")
+                    .append("Release Date: ").append(version.getReleaseDate() != null ? version.getReleaseDate() : "Not specified").append("\n")
+                    .append("Released: ").append(version.isReleased()).append("\n")
+                    .append("Archived: ").append(version.isArchived()).append("\n");
+
+            // Create a document for version metadata
+            Map<String, Object> metadataMap = new HashMap<>();
+            metadataMap.put("source", "jira_version_metadata");
+            metadataMap.put("version_id", versionId);
+            metadataMap.put("version_name", version.getName());
+
+            update.add(List.of(indexed("version:" + versionId, versionMetadata.toString(), metadataMap)));
+
+            // Then get issues for this version, page by page: each page is embedded while the next ones are fetched
+            AtomicLong bugCount = new AtomicLong();
+            AtomicLong taskCount = new AtomicLong();
+            int issueCount = jiraClient.forEachTicketPageOfVersion(versionId, page -> {
+                List<JiraIndexState.IndexedDocument> issueDocuments = new ArrayList<>();
+
+                // Create individual documents for each issue in the version
+                for (Issue issue : page) {
+                    // Group by issue type
+                    if (issue.getIssueType().getName().equalsIgnoreCase("Bug")) {
+                        bugCount.incrementAndGet();
+                    } else if (issue.getIssueType().getName().equalsIgnoreCase("Task")) {
+                        taskCount.incrementAndGet();
+                    }
+
+                    issueDocuments.add(versionIssueDocument(versionId, issue.getKey(), issue.getSummary(),
+                            issue.getIssueType().getName(), issue.getStatus() != null ? issue.getStatus().getName() : null));
+                }
+                update.add(issueDocuments);
+            });
+
+            // Create a document for version issues summary
+            StringBuilder versionSummary = new StringBuilder();
+            versionSummary.append("Version ").append(versionId).append(" - ").append(issueCount)
+                    .append(" issues\n");
+            versionSummary.append("Bugs: ").append(bugCount.get()).append("\n");
+            versionSummary.append("Tasks: ").append(taskCount.get()).append("\n");
+
+            Map<String, Object> summaryMetadata = new HashMap<>();
+            summaryMetadata.put("source", "jira_version_summary");
+            summaryMetadata.put("version_id", versionId);
+            summaryMetadata.put("bug_count", bugCount.get());
+            summaryMetadata.put("task_count", taskCount.get());
+
+            update.add(List.of(indexed("version-summary:" + versionId, versionSummary.toString(), summaryMetadata)));
+
+            update.finish();
+            logger.info("Synced version {} with {} issues", versionId, issueCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while syncing version {}", versionId);
+        } catch (JiraUnavailableException e) {
+            // Panne passagère : la resynchronisation de fond reprendra ce version
+            indexState.markPending(AnswerCache.versionTag(versionId));
+            logger.error("JIRA unavailable while syncing version {}, it will be retried by the next sync: {}",
+                    versionId, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error syncing version data for {}: {}", versionId, e.getMessage());
+        }
+    }
+
+    public void syncTicket(String ticketKey) {
+        try {
+            List<JiraIndexState.IndexedDocument> documents = new ArrayList<>();
+            // The issue is fetched once, comments included
+            Issue issue = jiraClient.getIssue(ticketKey);
+
+            // Create detailed information about the ticket
+            StringBuilder ticketData = new StringBuilder();
+            ticketData.append("Issue ").append(ticketKey).append(":\n")
+                    .append("Summary: ").append(issue.getSummary()).append("\n")
+                    .append("Type: ").append(issue.getIssueType().getName()).append("\n");
+
+            if (issue.getStatus() != null) {
+                ticketData.append("Status: ").append(issue.getStatus().getName()).append("\n");
+            }
+
+            if (issue.getDescription() != null) {
+                ticketData.append("Description: ").append(issue.getDescription()).append("\n");
+            }
+
+            if (issue.getAssignee() != null) {
+                ticketData.append("Assignee: ").append(issue.getAssignee().getDisplayName()).append("\n");
+            }
+
+            // Create metadata map
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("source", "jira_ticket");
+            metadata.put("ticket_key", ticketKey);
+            metadata.put("issue_type", issue.getIssueType().getName());
+            if (issue.getStatus() != null) {
+                metadata.put("status", issue.getStatus().getName());
+            }
+
+            documents.add(indexed("ticket:" + ticketKey, ticketData.toString(), metadata));
+
+            // Add comments as separate documents, identified by their JIRA comment id
+            List<Comment> comments = jiraClient.getAllComments(issue);
+            for (Comment comment : comments) {
+                StringBuilder commentData = new StringBuilder();
+                commentData.append("Comment on issue ").append(ticketKey).append(" by ")
+                        .append(comment.getAuthor().getDisplayName()).append(":\n")
+                        .append(comment.getBody());
+
+                Map<String, Object> commentMetadata = new HashMap<>();
+                commentMetadata.put("source", "jira_comment");
+                commentMetadata.put("ticket_key", ticketKey);
+                commentMetadata.put("author", comment.getAuthor().getDisplayName());
+
+                documents.add(indexed("comment:" + ticketKey + ":" + comment.getId(),
+                        commentData.toString(), commentMetadata));
+            }
+
+            IndexUpdate update = new IndexUpdate(AnswerCache.ticketTag(ticketKey));
+            update.add(documents);
+            update.finish();
+            logger.info("Synced ticket {} with {} comments", ticketKey, comments.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while syncing ticket {}", ticketKey);
+        } catch (JiraUnavailableException e) {
+            // Panne passagère : la resynchronisation de fond reprendra ce ticket
+            indexState.markPending(AnswerCache.ticketTag(ticketKey));
+            logger.error("JIRA unavailable while syncing ticket {}, it will be retried by the next sync: {}",
+                    ticketKey, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error syncing ticket data for {}: {}", ticketKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Mise à jour de l'index d'une version ou d'un ticket : les documents nouveaux ou modifiés sont
+     * envoyés à l'embedding au fur et à mesure de leur ajout ; {@link #finish()} attend les écritures,
+     * supprime les documents qui ont disparu et met à jour l'état.
+     */
+    private final class IndexUpdate {
+        private final String owner;
+        private final Map<String, String> previous;
+        private final List<JiraIndexState.IndexedDocument> current = new ArrayList<>();
+        // État conservé si des embeddings échouent : empreinte précédente pour les documents modifiés
+        private final List<JiraIndexState.IndexedDocument> retained = new ArrayList<>();
+        private final List<CompletableFuture<EmbeddingWriter.WriteResult>> writes = new ArrayList<>();
+        private final Set<String> changedTags = new HashSet<>();
+        private int changedCount;
+
+        IndexUpdate(String owner) {
+            this.owner = owner;
+            this.previous = indexState.findFingerprints(owner);
+        }
+
+        void add(List<JiraIndexState.IndexedDocument> documents) throws InterruptedException {
+            List<Document> changed = new ArrayList<>();
+            for (JiraIndexState.IndexedDocument document : documents) {
+                // Only the fingerprint is kept once the document has been handed to the writer
+                JiraIndexState.IndexedDocument state = new JiraIndexState.IndexedDocument(
+                        document.id(), document.fingerprint(), null);
+                current.add(state);
+                String previousFingerprint = previous.get(document.id());
+                if (document.fingerprint().equals(previousFingerprint)) {
+                    retained.add(state);
+                } else {
+                    retained.add(new JiraIndexState.IndexedDocument(document.id(),
+                            previousFingerprint != null ? previousFingerprint : PENDING_FINGERPRINT, null));
+                    changed.add(document.document());
+                }
+            }
+            changedCount += changed.size();
+            changedTags.addAll(AnswerCache.tagsOf(changed));
+            for (int i = 0; i < changed.size(); i += embeddingWriter.batchSize()) {
+                writes.add(embeddingWriter.submit(
+                        changed.subList(i, Math.min(i + embeddingWriter.batchSize(), changed.size()))));
+            }
+        }
+
+        void finish() throws InterruptedException {
+            EmbeddingWriter.WriteResult result = EmbeddingWriter.WriteResult.sum(writes);
+
+            Set<String> currentIds = new HashSet<>();
+            current.forEach(document -> currentIds.add(document.id()));
+            List<String> removed = previous.keySet().stream()
+                    .filter(id -> !currentIds.contains(id))
+                    .toList();
+            if (!removed.isEmpty()) {
+                vectorStore.delete(removed);
+            }
+
+            if (!result.hasFailures()) {
+                indexState.save(owner, current, true);
+            } else {
+                // On ne sait pas quels lots ont échoué : les documents modifiés gardent leur ancienne
+                // empreinte (ou une empreinte d'attente s'ils sont nouveaux) et seront retentés
+                indexState.save(owner, retained, false);
+                logger.warn("{} documents of {} could not be embedded, they will be retried by the next sync",
+                        result.failed(), owner);
+            }
+
+            if (changedCount > 0 || !removed.isEmpty()) {
+                // Cached answers built from older data for these tickets/versions are now stale
+                changedTags.add(owner);
+                answerCache.invalidate(changedTags);
+            }
+            logger.info("Indexed {}: {} documents, {} re-embedded, {} removed",
+                    owner, current.size(), changedCount, removed.size());
+        }
+    }
+
+    /**
+     * Document d'une issue de version
+     *
+     * @param status Statut de l'issue, ou null
+     */
+    static JiraIndexState.IndexedDocument versionIssueDocument(String versionId, String issueKey, String summary,
+                                                               String issueType, String status) {
+        StringBuilder issueData = new StringBuilder();
+        issueData.append("Issue ").append(issueKey).append(" in version ").append(versionId).append(":\n")
+                .append("Summary: ").append(summary).append("\n")
+                .append("Type: ").append(issueType).append("\n");
+
+        if (status != null) {
+            issueData.append("Status: ").append(status).append("\n");
+        }
+
+        Map<String, Object> issueMetadata = new HashMap<>();
+        issueMetadata.put("source", "jira_issue");
+        issueMetadata.put("issue_key", issueKey);
+        issueMetadata.put("version_id", versionId);
+        issueMetadata.put("issue_type", issueType);
+
+        return indexed("version-issue:" + versionId + ":" + issueKey, issueData.toString(), issueMetadata);
+    }
+
+    private static JiraIndexState.IndexedDocument indexed(String key, String text, Map<String, Object> metadata) {
+        String id = UUID.nameUUIDFromBytes(("jira:" + key).getBytes(StandardCharsets.UTF_8)).toString();
+        return new JiraIndexState.IndexedDocument(id, fingerprint(text, metadata), new Document(id, text, metadata));
+    }
+
+    private static String fingerprint(String text, Map<String, Object> metadata) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            digest.update(new TreeMap<>(metadata).toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        backgroundExecutor.shutdownNow();
+    }
+}
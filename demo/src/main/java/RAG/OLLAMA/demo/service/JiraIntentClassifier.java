@@ -0,0 +1,279 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Décide localement si une question a besoin de Jira, sans appel au LLM :
+ * <ul>
+ *     <li>gazetteer : clés de projets Jira et noms de versions connus cités dans la question</li>
+ *     <li>similarité entre l'embedding de la question et des exemples étiquetés Jira / hors Jira</li>
+ *     <li>mots-clés Jira, utilisés pour ne pas écarter Jira à tort</li>
+ * </ul>
+ * Quand la décision n'est pas assez nette, le résultat est UNSURE et l'appelant se rabat sur le LLM.
+ * Le gazetteer est alimenté par {@link JiraVersionCatalog}. Le nombre de passages par chaque chemin est compté.
+ */
+@Service
+public class JiraIntentClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(JiraIntentClassifier.class);
+
+    private static final List<String> JIRA_EXAMPLES = List.of(
+            "Quels sont les bugs ouverts dans la prochaine version ?",
+            "Quel est le statut du ticket de migration de la base ?",
+            "Combien de tickets reste-t-il dans la release ?",
+            "Qui travaille sur l'anomalie de connexion ?",
+            "Résume les commentaires du ticket",
+            "What issues are planned for the next release?",
+            "Which bugs were fixed in the last sprint?",
+            "Show me the open tasks assigned to the team");
+
+    private static final List<String> NOT_JIRA_EXAMPLES = List.of(
+            "Que dit le document sur la politique de sécurité ?",
+            "Résume le chapitre 3 du PDF",
+            "Explique-moi le fonctionnement d'une base vectorielle",
+            "Quelle est la définition d'un embedding ?",
+            "Traduis ce paragraphe en anglais",
+            "What does the contract say about termination?",
+            "How do I configure the application?",
+            "Write a short introduction about machine learning");
+
+    private static final Set<String> JIRA_KEYWORDS = Set.of(
+            "jira", "ticket", "tickets", "issue", "issues", "bug", "bugs", "anomalie", "anomalies",
+            "release", "releases", "version", "versions", "sprint", "backlog", "epic", "story", "stories",
+            "tâche", "tâches", "task", "tasks", "livraison", "fixversion");
+
+    private static final Pattern WORD_PATTERN = Pattern.compile("[\\p{L}\\p{N}._-]+");
+
+    public enum Decision {
+        JIRA, NOT_JIRA, UNSURE
+    }
+
+    /**
+     * Chemin emprunté pour décider si Jira est nécessaire
+     */
+    public enum Route {
+        /** Ticket ou version trouvé par les expressions régulières */
+        REGEX,
+        /** Jira écarté localement */
+        LOCAL_NOT_JIRA,
+        /** Jira requis et versions résolues localement */
+        LOCAL_JIRA,
+        /** Décision ou extraction laissée au LLM */
+        LLM_FALLBACK
+    }
+
+    /**
+     * @param versions Versions connues citées dans la question
+     */
+    public record Intent(Decision decision, List<String> versions) {
+    }
+
+    /**
+     * @param versions     Versions connues citées dans la question
+     * @param projectKeys  Clés de projet connues citées dans la question
+     * @param keywordFound Un mot-clé Jira est cité dans la question
+     */
+    public record Mentions(List<String> versions, List<String> projectKeys, boolean keywordFound) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final double minSimilarity;
+    private final double minMargin;
+    private final long examplesRetryDelayNanos;
+    private final Map<Route, Counter> routeCounts = new EnumMap<>(Route.class);
+
+    private volatile Set<String> projectKeys = Set.of();
+    private volatile Map<String, String> versionNames = Map.of();
+    private volatile List<float[]> jiraExamples;
+    private volatile List<float[]> notJiraExamples;
+    // Pas de synchronized autour de l'appel à Ollama : il épinglerait le thread virtuel porteur
+    private final ReentrantLock examplesLock = new ReentrantLock();
+    // Après un échec, pas de nouvel essai avant cette date (System.nanoTime)
+    private volatile long examplesRetryAt;
+
+    public JiraIntentClassifier(
+            EmbeddingModel embeddingModel,
+            PipelineMetrics metrics,
+            @Value("${jira.intent.min-similarity:0.6}") double minSimilarity,
+            @Value("${jira.intent.min-margin:0.05}") double minMargin,
+            @Value("${jira.intent.examples-retry-delay:30s}") Duration examplesRetryDelay) {
+        this.embeddingModel = embeddingModel;
+        this.minSimilarity = minSimilarity;
+        this.minMargin = minMargin;
+        this.examplesRetryDelayNanos = examplesRetryDelay.toNanos();
+        this.examplesRetryAt = System.nanoTime();
+        for (Route route : Route.values()) {
+            routeCounts.put(route, metrics.counter("jira.intent.routes", "route", route.name()));
+        }
+    }
+
+    public void updateProjectKeys(Collection<String> keys) {
+        this.projectKeys = Set.copyOf(keys);
+        logger.info("JIRA intent gazetteer: {} project keys", keys.size());
+    }
+
+    /**
+     * @return true si key est une clé de projet connue, ou si les clés ne sont pas encore chargées
+     */
+    public boolean isProjectKey(String key) {
+        Set<String> keys = projectKeys;
+        return keys.isEmpty() || keys.contains(key);
+    }
+
+    /**
+     * @param names Noms de versions connus
+     */
+    public void updateVersionNames(Collection<String> names) {
+        Map<String, String> byLowerCase = new HashMap<>();
+        names.forEach(name -> byLowerCase.put(name.toLowerCase(Locale.ROOT), name));
+        this.versionNames = Map.copyOf(byLowerCase);
+        logger.info("JIRA intent gazetteer: {} version names", byLowerCase.size());
+    }
+
+    /**
+     * @param question          Question posée
+     * @param questionEmbedding Embedding de la question, déjà calculé par l'appelant
+     * @return Décision locale et versions connues citées dans la question
+     */
+    public Intent classify(String question, float[] questionEmbedding) {
+        return classify(mentions(question), questionEmbedding);
+    }
+
+    /**
+     * @param mentions Résultat de {@link #mentions} pour la question
+     */
+    public Intent classify(Mentions mentions, float[] questionEmbedding) {
+        if (!mentions.versions().isEmpty() || !mentions.projectKeys().isEmpty()) {
+            return new Intent(Decision.JIRA, mentions.versions());
+        }
+
+        Decision decision = classifyByExamples(questionEmbedding);
+        if (decision == Decision.NOT_JIRA && mentions.keywordFound()) {
+            // Un mot-clé Jira contredit la similarité : on laisse trancher le LLM
+            decision = Decision.UNSURE;
+        }
+        return new Intent(decision, mentions.versions());
+    }
+
+    /**
+     * Recherche dans le dictionnaire des versions et projets connus, sans appel à Ollama
+     *
+     * @return Versions, clés de projet et mots-clés Jira cités dans la question
+     */
+    public Mentions mentions(String question) {
+        List<String> versions = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        boolean keywordFound = false;
+
+        Matcher matcher = WORD_PATTERN.matcher(question);
+        while (matcher.find()) {
+            String word = matcher.group();
+            String lowerCase = word.toLowerCase(Locale.ROOT);
+            if (versionNames.containsKey(lowerCase)) {
+                versions.add(versionNames.get(lowerCase));
+            }
+            if (projectKeys.contains(word)) {
+                keys.add(word);
+            }
+            if (JIRA_KEYWORDS.contains(lowerCase)) {
+                keywordFound = true;
+            }
+        }
+        return new Mentions(versions, keys, keywordFound);
+    }
+
+    private Decision classifyByExamples(float[] questionEmbedding) {
+        if (!examplesLoaded()) {
+            return Decision.UNSURE;
+        }
+        double jiraScore = bestSimilarity(questionEmbedding, jiraExamples);
+        double notJiraScore = bestSimilarity(questionEmbedding, notJiraExamples);
+        logger.debug("JIRA intent similarity: jira={}, not-jira={}", jiraScore, notJiraScore);
+
+        if (Math.max(jiraScore, notJiraScore) < minSimilarity || Math.abs(jiraScore - notJiraScore) < minMargin) {
+            return Decision.UNSURE;
+        }
+        return jiraScore > notJiraScore ? Decision.JIRA : Decision.NOT_JIRA;
+    }
+
+    private boolean examplesLoaded() {
+        if (jiraExamples != null) {
+            return true;
+        }
+        // Ollama en échec récent, ou chargement déjà en cours : UNSURE tout de suite plutôt que
+        // d'aligner toutes les questions derrière le même appel
+        if (System.nanoTime() - examplesRetryAt < 0 || !examplesLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (jiraExamples == null) {
+                try {
+                    notJiraExamples = embeddingModel.embed(NOT_JIRA_EXAMPLES);
+                    jiraExamples = embeddingModel.embed(JIRA_EXAMPLES);
+                } catch (Exception e) {
+                    examplesRetryAt = System.nanoTime() + examplesRetryDelayNanos;
+                    logger.warn("Could not embed JIRA intent examples, next attempt in {} s: {}",
+                            examplesRetryDelayNanos / 1_000_000_000L, e.getMessage());
+                    return false;
+                }
+            }
+        } finally {
+            examplesLock.unlock();
+        }
+        return true;
+    }
+
+    private static double bestSimilarity(float[] embedding, List<float[]> examples) {
+        double best = -1;
+        for (float[] example : examples) {
+            if (example.length == embedding.length) {
+                best = Math.max(best, cosine(embedding, example));
+            }
+        }
+        return best;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    public void record(Route route) {
+        Counter counter = routeCounts.get(route);
+        counter.increment();
+        logger.info("JIRA detection route {} (taken {} times)", route, (long) counter.count());
+    }
+
+    /**
+     * @return Nombre de passages par chaque chemin depuis le démarrage
+     */
+    public Map<Route, Long> getRouteCounts() {
+        Map<Route, Long> counts = new EnumMap<>(Route.class);
+        routeCounts.forEach((route, counter) -> counts.put(route, (long) counter.count()));
+        return counts;
+    }
+}
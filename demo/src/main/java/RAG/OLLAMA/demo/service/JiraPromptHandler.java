@@ -1,232 +1,170 @@
 package RAG.OLLAMA.demo.service;
 
-import com.atlassian.jira.rest.client.api.domain.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import com.atlassian.jira.rest.client.api.domain.Issue;
-import com.atlassian.jira.rest.client.api.domain.Comment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
 
 @Service
 public class JiraPromptHandler {
     private static final Logger logger = LoggerFactory.getLogger(JiraPromptHandler.class);
 
+    // Version numbers like "version 10000" or "v10000"
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(?i)(?:version|v)\\s*(\\d+)");
+
     private final ChatModel chatModel;
-    private final MyJiraClient jiraClient;
-    private final VectorStore vectorStore;
+    private final HybridRetriever retriever;
+    private final ContextAssembler contextAssembler;
+    private final PipelineMetrics metrics;
+    private final JiraIndexer jiraIndexer;
+    private final EmbeddingModel embeddingModel;
+    private final AnswerCache answerCache;
+    private final JiraIntentClassifier intentClassifier;
 
     @Autowired
-    public JiraPromptHandler(ChatModel chatModel, MyJiraClient jiraClient, VectorStore vectorStore) {
+    public JiraPromptHandler(ChatModel chatModel, HybridRetriever retriever, ContextAssembler contextAssembler,
+                             JiraIndexer jiraIndexer,
+                             EmbeddingModel embeddingModel,
+                             AnswerCache answerCache, JiraIntentClassifier intentClassifier,
+                             PipelineMetrics metrics) {
         this.chatModel = chatModel;
-        this.jiraClient = jiraClient;
-        this.vectorStore = vectorStore;
+        this.retriever = retriever;
+        this.contextAssembler = contextAssembler;
+        this.metrics = metrics;
+        this.jiraIndexer = jiraIndexer;
+        this.embeddingModel = embeddingModel;
+        this.answerCache = answerCache;
+        this.intentClassifier = intentClassifier;
     }
 
-    public String processQueryWithRagAndJira(String question) {
-        // Step 1: First check if we have direct references to versions or tickets
-        List<String> directVersions = extractVersionsFromQuestion(question);
-        List<String> directTickets = extractTicketsFromQuestion(question);
-
-        // If direct references found, process them and store in vector database
-        if (!directVersions.isEmpty() || !directTickets.isEmpty()) {
-            logger.info("Direct references found - Versions: {}, Tickets: {}", directVersions, directTickets);
-            // Fetch and store JIRA data in vector store
-            fetchAndStoreJiraData(directVersions, directTickets);
-        } else {
-            // Step 2: Otherwise, check if we need JIRA information via LLM
-            String jiraCheckResponse = checkIfJiraRequired(question);
-            logger.info("JIRA check response: {}", jiraCheckResponse);
-
-            // Process the LLM response
-            List<String> versions = extractValues(jiraCheckResponse, "VERSIONS:");
-            List<String> tickets = extractValues(jiraCheckResponse, "JIRA_TICKETS:");
-
-            // If JIRA references detected, fetch and store them
-            if (!versions.isEmpty() || !tickets.isEmpty()) {
-                fetchAndStoreJiraData(versions, tickets);
-            }
+    /**
+     * @param tickets Ticket keys found in the question by {@link InteractionRouter} (known projects only)
+     */
+    public String processQueryWithRagAndJira(String question, List<String> tickets) {
+        PreparedQuery query = prepareQuery(question, tickets);
+        if (query.cachedAnswer() != null) {
+            return query.cachedAnswer();
         }
 
-        // Step 3: Now use RAG to answer the question using all available information
-        // This includes both previously stored documents and newly fetched JIRA data
-        return processWithRagOnly(question);
+        String answer = chatModel.call(query.prompt().text());
+        cacheAnswer(query, answer);
+        return answer;
     }
 
-    private void fetchAndStoreJiraData(List<String> versions, List<String> tickets) {
-        List<Document> jiraDocuments = new ArrayList<>();
-
-        // Get JIRA version data if needed
-        if (!versions.isEmpty()) {
-            for (String versionId : versions) {
-                try {
-                    // Get version metadata
-                    Version version = jiraClient.getVersionInfo(versionId);
-
-                    StringBuilder versionMetadata = new StringBuilder();
-                    versionMetadata.append("Version: ").append(version.getName()).append("\n")
-                            .append("Description: ").append(version.getDescription() != null ? version.getDescription() : "N/A").append("\n")
-                            .append("Release Date: ").append(version.getReleaseDate() != null ? version.getReleaseDate() : "Not specified").append("\n")
-                            .append("Released: ").append(version.isReleased()).append("\n")
-                            .append("Archived: ").append(version.isArchived()).append("\n");
-
-                    // Create a document for version metadata
-                    Map<String, Object> metadataMap = new HashMap<>();
-                    metadataMap.put("source", "jira_version_metadata");
-                    metadataMap.put("version_id", versionId);
-                    metadataMap.put("version_name", version.getName());
-
-                    Document versionMetadataDoc = new Document(versionMetadata.toString(), metadataMap);
-                    jiraDocuments.add(versionMetadataDoc);
-
-                    // Then get issues for this version
-                    List<Issue> versionIssues = jiraClient.getTicketsByVersion(versionId);
-
-                    // Create a document for version issues summary
-                    StringBuilder versionSummary = new StringBuilder();
-                    versionSummary.append("Version ").append(versionId).append(" - ").append(versionIssues.size())
-                            .append(" issues\n");
-
-                    // Group by issue type
-                    long bugCount = versionIssues.stream()
-                            .filter(i -> i.getIssueType().getName().equalsIgnoreCase("Bug"))
-                            .count();
-                    long taskCount = versionIssues.stream()
-                            .filter(i -> i.getIssueType().getName().equalsIgnoreCase("Task"))
-                            .count();
-
-                    versionSummary.append("Bugs: ").append(bugCount).append("\n");
-                    versionSummary.append("Tasks: ").append(taskCount).append("\n");
-
-                    Map<String, Object> summaryMetadata = new HashMap<>();
-                    summaryMetadata.put("source", "jira_version_summary");
-                    summaryMetadata.put("version_id", versionId);
-                    summaryMetadata.put("bug_count", bugCount);
-                    summaryMetadata.put("task_count", taskCount);
-
-                    Document versionSummaryDoc = new Document(versionSummary.toString(), summaryMetadata);
-                    jiraDocuments.add(versionSummaryDoc);
-
-                    // Create individual documents for each issue in the version
-                    for (Issue issue : versionIssues) {
-                        StringBuilder issueData = new StringBuilder();
-                        issueData.append("Issue ").append(issue.getKey()).append(" in version ").append(versionId).append(":\n")
-                                .append("Summary: ").append(issue.getSummary()).append("\n")
-                                .append("Type: ").append(issue.getIssueType().getName()).append("\n");
-
-                        if (issue.getStatus() != null) {
-                            issueData.append("Status: ").append(issue.getStatus().getName()).append("\n");
-                        }
-
-                        Map<String, Object> issueMetadata = new HashMap<>();
-                        issueMetadata.put("source", "jira_issue");
-                        issueMetadata.put("issue_key", issue.getKey());
-                        issueMetadata.put("version_id", versionId);
-                        issueMetadata.put("issue_type", issue.getIssueType().getName());
-
-                        Document issueDoc = new Document(issueData.toString(), issueMetadata);
-                        jiraDocuments.add(issueDoc);
+    /**
+     * Streaming variant of {@link #processQueryWithRagAndJira}: JIRA lookups and retrieval run once
+     * on a worker thread, then the answer tokens are streamed as they are generated.
+     */
+    public Flux<String> streamQueryWithRagAndJira(String question, List<String> tickets) {
+        return Mono.fromCallable(() -> prepareQuery(question, tickets))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(query -> {
+                    if (query.cachedAnswer() != null) {
+                        return Flux.just(query.cachedAnswer());
                     }
+                    StringBuilder answer = new StringBuilder();
+                    return chatModel.stream(query.prompt().text())
+                            .doOnNext(answer::append)
+                            .doOnComplete(() -> cacheAnswer(query, answer.toString()));
+                });
+    }
 
-                    logger.info("Processed version {} with {} issues", versionId, versionIssues.size());
-                } catch (Exception e) {
-                    logger.error("Error fetching version data for {}: {}", versionId, e.getMessage());
-                }
-            }
+    private PreparedQuery prepareQuery(String question, List<String> directTickets) {
+        // Step 0: Reuse an answer to a semantically equivalent question about the same tickets/versions.
+        // Release names and project keys from the gazetteer count too: "What changed in Phoenix?" and
+        // "What changed in Orion?" embed almost identically but must not share an answer
+        List<String> directVersions = extractVersionsFromQuestion(question);
+        JiraIntentClassifier.Mentions mentions = intentClassifier.mentions(question);
+        Set<String> identifiers = AnswerCache.tagsOf(directVersions, directTickets);
+        mentions.versions().forEach(version -> identifiers.add(AnswerCache.versionTag(version)));
+        mentions.projectKeys().forEach(key -> identifiers.add(AnswerCache.projectTag(key)));
+
+        float[] questionEmbedding = embeddingModel.embed(question);
+        String cachedAnswer = answerCache.findSimilar(questionEmbedding, identifiers);
+        if (cachedAnswer != null) {
+            return new PreparedQuery(question, questionEmbedding, identifiers, null, cachedAnswer);
         }
 
-        // Get specific ticket data if needed
-        if (!tickets.isEmpty()) {
-            for (String ticketKey : tickets) {
-                try {
-                    Issue issue = jiraClient.getIssue(ticketKey);
-
-                    // Create detailed information about the ticket
-                    StringBuilder ticketData = new StringBuilder();
-                    ticketData.append("Issue ").append(ticketKey).append(":\n")
-                            .append("Summary: ").append(issue.getSummary()).append("\n")
-                            .append("Type: ").append(issue.getIssueType().getName()).append("\n");
-
-                    if (issue.getStatus() != null) {
-                        ticketData.append("Status: ").append(issue.getStatus().getName()).append("\n");
-                    }
-
-                    if (issue.getDescription() != null) {
-                        ticketData.append("Description: ").append(issue.getDescription()).append("\n");
-                    }
+        RagPrompt prompt = prepareRagPrompt(question, questionEmbedding, mentions, directVersions, directTickets);
 
-                    if (issue.getAssignee() != null) {
-                        ticketData.append("Assignee: ").append(issue.getAssignee().getDisplayName()).append("\n");
-                    }
+        // Same question over the same retrieved documents: the answer would be identical
+        cachedAnswer = answerCache.findExact(question, prompt.documentIds());
+        return new PreparedQuery(question, questionEmbedding, identifiers, prompt, cachedAnswer);
+    }
 
-                    // Create metadata map
-                    Map<String, Object> metadata = new HashMap<>();
-                    metadata.put("source", "jira_ticket");
-                    metadata.put("ticket_key", ticketKey);
-                    metadata.put("issue_type", issue.getIssueType().getName());
-                    if (issue.getStatus() != null) {
-                        metadata.put("status", issue.getStatus().getName());
-                    }
+    private void cacheAnswer(PreparedQuery query, String answer) {
+        answerCache.put(query.question(), query.prompt().documentIds(), query.questionEmbedding(),
+                query.identifiers(), query.prompt().tags(), answer);
+    }
 
-                    // Create document for ticket basic info
-                    Document ticketDoc = new Document(ticketData.toString(), metadata);
-                    jiraDocuments.add(ticketDoc);
-
-                    // Add comments as separate documents if available
-                    List<Comment> comments = jiraClient.getAllComments(ticketKey);
-                    if (comments != null && !comments.isEmpty()) {
-                        for (Comment comment : comments) {
-                            StringBuilder commentData = new StringBuilder();
-                            commentData.append("Comment on issue ").append(ticketKey).append(" by ")
-                                    .append(comment.getAuthor().getDisplayName()).append(":\n")
-                                    .append(comment.getBody());
-
-                            Map<String, Object> commentMetadata = new HashMap<>();
-                            commentMetadata.put("source", "jira_comment");
-                            commentMetadata.put("ticket_key", ticketKey);
-                            commentMetadata.put("author", comment.getAuthor().getDisplayName());
-
-                            Document commentDoc = new Document(commentData.toString(), commentMetadata);
-                            jiraDocuments.add(commentDoc);
-                        }
-                    }
+    private RagPrompt prepareRagPrompt(String question, float[] questionEmbedding, JiraIntentClassifier.Mentions mentions,
+                                       List<String> directVersions, List<String> directTickets) {
+        // Versions/tickets the question is about, used to pre-filter retrieval
+        List<String> versions = directVersions;
+        List<String> tickets = directTickets;
 
-                    logger.info("Processed ticket {} with {} comments", ticketKey, comments.size());
-                } catch (Exception e) {
-                    logger.error("Error fetching ticket data for {}: {}", ticketKey, e.getMessage());
+        // Step 1: First check if we have direct references to versions or tickets
+        // If direct references found, process them and store in vector database
+        if (!directVersions.isEmpty() || !directTickets.isEmpty()) {
+            logger.info("Direct references found - Versions: {}, Tickets: {}", directVersions, directTickets);
+            intentClassifier.record(JiraIntentClassifier.Route.REGEX);
+            // Make sure the index is up to date for these versions/tickets
+            jiraIndexer.ensureIndexed(directVersions, directTickets);
+        } else {
+            // Step 2: Otherwise, decide locally whether JIRA is needed
+            JiraIntentClassifier.Intent intent = intentClassifier.classify(mentions, questionEmbedding);
+            logger.info("Local JIRA intent: {}", intent);
+
+            if (intent.decision() == JiraIntentClassifier.Decision.NOT_JIRA) {
+                intentClassifier.record(JiraIntentClassifier.Route.LOCAL_NOT_JIRA);
+            } else if (intent.decision() == JiraIntentClassifier.Decision.JIRA && !intent.versions().isEmpty()) {
+                intentClassifier.record(JiraIntentClassifier.Route.LOCAL_JIRA);
+                versions = intent.versions();
+                jiraIndexer.ensureIndexed(versions, tickets);
+            } else {
+                // Low confidence, or JIRA needed without known identifiers: ask the LLM
+                intentClassifier.record(JiraIntentClassifier.Route.LLM_FALLBACK);
+                String jiraCheckResponse = checkIfJiraRequired(question);
+                logger.info("JIRA check response: {}", jiraCheckResponse);
+
+                // Process the LLM response
+                versions = extractValues(jiraCheckResponse, "VERSIONS:");
+                // Same rule as InteractionRouter: only keys of known projects are tickets
+                tickets = extractValues(jiraCheckResponse, "JIRA_TICKETS:").stream()
+                        .filter(ticket -> ticket.indexOf('-') > 0
+                                && intentClassifier.isProjectKey(ticket.substring(0, ticket.indexOf('-'))))
+                        .toList();
+
+                // If JIRA references detected, fetch and store them
+                if (!versions.isEmpty() || !tickets.isEmpty()) {
+                    jiraIndexer.ensureIndexed(versions, tickets);
                 }
             }
         }
 
-        // Store all JIRA data in vector store for future use
-        if (!jiraDocuments.isEmpty()) {
-            try {
-                vectorStore.accept(jiraDocuments);
-                logger.info("Stored {} JIRA documents in vector store", jiraDocuments.size());
-            } catch (Exception e) {
-                logger.error("Error storing JIRA data in vector store: {}", e.getMessage());
-            }
-        }
+        // Step 3: Now use RAG to build the prompt from all available information
+        // This includes both previously stored documents and newly fetched JIRA data
+        return buildRagPrompt(question, versions, tickets);
     }
 
-    private List<String> extractVersionsFromQuestion(String question) {
+    static List<String> extractVersionsFromQuestion(String question) {
         List<String> versions = new ArrayList<>();
-
-        // Pattern to match version numbers like "version 10000" or "v10000"
-        Pattern versionPattern = Pattern.compile("(?i)(?:version|v)\\s*(\\d+)");
-        Matcher matcher = versionPattern.matcher(question);
+        Matcher matcher = VERSION_PATTERN.matcher(question);
 
         while (matcher.find()) {
             versions.add(matcher.group(1));
@@ -236,20 +174,6 @@ public class JiraPromptHandler {
         return versions;
     }
 
-    private List<String> extractTicketsFromQuestion(String question) {
-        List<String> tickets = new ArrayList<>();
-        // Pattern to match JIRA ticket IDs like AIAG-3, PROJECT-123, etc.
-        Pattern ticketPattern = Pattern.compile("([A-Z]+-\\d+)");
-        Matcher matcher = ticketPattern.matcher(question);
-
-        while (matcher.find()) {
-            tickets.add(matcher.group(1));
-        }
-
-        logger.info("Directly extracted tickets from question: {}", tickets);
-        return tickets;
-    }
-
     private String checkIfJiraRequired(String question) {
         String prompt = "Given this question could you please check if we need information from jira system to respond? " +
                 "If yes, answer with the following structure:\n" +
@@ -262,18 +186,26 @@ public class JiraPromptHandler {
                 "If jira is not required, return \"jira not required\".\n" +
                 "The question is: " + question;
 
-        return chatModel.call(prompt);
+        return metrics.observe("jira.detection", () -> chatModel.call(prompt));
     }
 
-    private String processWithRagOnly(String question) {
-        // Use RAG to find similar documents (which now includes JIRA data)
-        List<Document> similarDocuments = vectorStore.similaritySearch(question);
+    private RagPrompt buildRagPrompt(String question, List<String> versions, List<String> tickets) {
+        // Use hybrid (full-text + vector) retrieval, restricted to the versions/tickets of the question if any
+        RetrievalFilter identifierFilter = RetrievalFilter.identifiers(versions, tickets);
+        List<Document> similarDocuments = retriever.retrieve(question, identifierFilter);
+        if (similarDocuments.isEmpty() && !identifierFilter.isEmpty()) {
+            // Nothing indexed for these identifiers (e.g. JIRA unavailable): search everything
+            similarDocuments = retriever.retrieve(question);
+        }
 
-        // Generate response with the similar documents
-        return generateResponse(question, similarDocuments);
+        // Build the prompt with the similar documents
+        return new RagPrompt(
+                buildPrompt(question, similarDocuments),
+                similarDocuments.stream().map(Document::getId).toList(),
+                AnswerCache.tagsOf(similarDocuments));
     }
 
-    private List<String> extractValues(String jiraResponse, String prefix) {
+    static List<String> extractValues(String jiraResponse, String prefix) {
         List<String> values = new ArrayList<>();
         Pattern pattern = Pattern.compile(prefix + "\\s*\\[(.*)\\]");
         Matcher matcher = pattern.matcher(jiraResponse);
@@ -291,11 +223,9 @@ public class JiraPromptHandler {
         return values;
     }
 
-    private String generateResponse(String question, List<Document> similarDocuments) {
+    private String buildPrompt(String question, List<Document> similarDocuments) {
         // Extract context from similar documents
-        String context = similarDocuments.stream()
-                .map(this::extractDocumentText)
-                .collect(Collectors.joining("\n\n"));
+        String context = contextAssembler.assemble(similarDocuments, JiraPromptHandler::extractDocumentText);
 
         // Build the full prompt
         StringBuilder fullPrompt = new StringBuilder();
@@ -305,12 +235,11 @@ public class JiraPromptHandler {
         fullPrompt.append("Please provide a clear and concise answer based only on the information in the context. " +
                 "If the context doesn't contain relevant information, say so rather than making up an answer.");
 
-        // Call the LLM with the context
-        logger.info("Generating response with context length: {}", fullPrompt.length());
-        return chatModel.call(fullPrompt.toString());
+        logger.info("Generating response with prompt of {} tokens", contextAssembler.countTokens(fullPrompt.toString()));
+        return fullPrompt.toString();
     }
 
-    private String extractDocumentText(Document document) {
+    static String extractDocumentText(Document document) {
         try {
             // First try to get the document text directly
             String text = document.getText();
@@ -359,4 +288,11 @@ public class JiraPromptHandler {
             return "Unable to extract document text";
         }
     }
-}
\ No newline at end of file
+
+    private record RagPrompt(String text, List<String> documentIds, Set<String> tags) {
+    }
+
+    private record PreparedQuery(String question, float[] questionEmbedding, Set<String> identifiers,
+                                 RagPrompt prompt, String cachedAnswer) {
+    }
+}
@@ -0,0 +1,16 @@
+package RAG.OLLAMA.demo.service;
+
+/**
+ * Jira n'a pas répondu à temps, ou n'est pas appelé (circuit ouvert, limite de débit
+ * ou nombre maximal d'appels simultanés atteint).
+ */
+public class JiraUnavailableException extends RuntimeException {
+
+    public JiraUnavailableException(String message) {
+        super(message);
+    }
+
+    public JiraUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
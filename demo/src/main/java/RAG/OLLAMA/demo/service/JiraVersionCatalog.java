@@ -0,0 +1,139 @@
+package RAG.OLLAMA.demo.service;
+
+import com.atlassian.jira.rest.client.api.domain.Version;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalogue en mémoire des versions Jira de tous les projets : par identifiant (unique dans Jira)
+ * et par nom puis clé de projet (un même nom, "1.0" ou "Sprint 12", existe dans plusieurs projets).
+ * Il est chargé au démarrage puis rafraîchi en arrière-plan, ce qui évite de récupérer
+ * tout le projet (et parfois une recherche JQL pour trouver le projet) à chaque question.
+ * Une entrée plus ancienne que jira.versions.ttl est ignorée et rechargée depuis Jira.
+ * Le catalogue alimente aussi le gazetteer de {@link JiraIntentClassifier}.
+ */
+@Service
+public class JiraVersionCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(JiraVersionCatalog.class);
+
+    private final MyJiraClient jiraClient;
+    private final JiraIntentClassifier intentClassifier;
+    private final Duration ttl;
+    private final Map<String, Entry> versionsById = new ConcurrentHashMap<>();
+    // Nom -> clé de projet -> version
+    private final Map<String, Map<String, Entry>> versionsByName = new ConcurrentHashMap<>();
+
+    public JiraVersionCatalog(
+            MyJiraClient jiraClient,
+            JiraIntentClassifier intentClassifier,
+            @Value("${jira.versions.ttl:30m}") Duration ttl) {
+        this.jiraClient = jiraClient;
+        this.intentClassifier = intentClassifier;
+        this.ttl = ttl;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Sans bloquer le démarrage si Jira ne répond pas ; appels HTTP bloquants : thread virtuel
+        // plutôt que le ForkJoinPool commun
+        Thread.ofVirtual().name("jira-version-catalog").start(this::refresh);
+    }
+
+    /**
+     * Recharge toutes les versions de tous les projets
+     */
+    @Scheduled(fixedDelayString = "${jira.versions.refresh-interval:10m}",
+            initialDelayString = "${jira.versions.refresh-interval:10m}")
+    public void refresh() {
+        try {
+            Map<String, List<Version>> versionsByProject = jiraClient.getVersionsByProject();
+            Instant loadedAt = Instant.now();
+
+            versionsByProject.forEach((projectKey, projectVersions) -> {
+                for (Version version : projectVersions) {
+                    put(new Entry(projectKey, version, loadedAt));
+                }
+            });
+            // Versions supprimées de Jira depuis le dernier chargement
+            versionsById.values().removeIf(entry -> entry.loadedAt().isBefore(loadedAt));
+            versionsByName.values().forEach(byProject ->
+                    byProject.values().removeIf(entry -> entry.loadedAt().isBefore(loadedAt)));
+            versionsByName.values().removeIf(Map::isEmpty);
+
+            intentClassifier.updateProjectKeys(versionsByProject.keySet());
+            intentClassifier.updateVersionNames(versionsByProject.values().stream()
+                    .flatMap(List::stream)
+                    .map(Version::getName)
+                    .toList());
+            logger.info("JIRA version catalog refreshed: {} projects, {} versions", versionsByProject.size(), versionsById.size());
+        } catch (Exception e) {
+            logger.warn("Could not refresh JIRA version catalog: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param versionId Identifiant ou nom de la version Jira
+     * @return Version, depuis le catalogue si l'entrée est fraîche, sinon depuis Jira
+     * @throws IllegalArgumentException si le nom désigne des versions de plusieurs projets
+     */
+    public Version getVersion(String versionId) {
+        Entry entry = fresh(versionsById, versionId);
+        if (entry == null) {
+            Map<String, Entry> byProject = versionsByName.getOrDefault(versionId, Map.of());
+            List<Entry> candidates = byProject.keySet().stream()
+                    .map(projectKey -> fresh(byProject, projectKey))
+                    .filter(Objects::nonNull)
+                    .toList();
+            if (candidates.size() > 1) {
+                throw new IllegalArgumentException("Version name " + versionId + " exists in several projects: "
+                        + candidates.stream().map(Entry::projectKey).sorted().toList());
+            }
+            entry = candidates.isEmpty() ? null : candidates.get(0);
+        }
+        if (entry != null) {
+            return entry.version();
+        }
+
+        logger.info("Version {} not in catalog, fetching it from JIRA", versionId);
+        Version version = jiraClient.getVersionInfo(versionId);
+        // Le projet n'est pas connu : l'entrée n'est indexée que par identifiant
+        if (version.getId() != null) {
+            versionsById.put(version.getId().toString(), new Entry(null, version, Instant.now()));
+        }
+        return version;
+    }
+
+    private Entry fresh(Map<String, Entry> entries, String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.loadedAt().isBefore(Instant.now().minus(ttl))) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(Entry entry) {
+        versionsByName.computeIfAbsent(entry.version().getName(), name -> new ConcurrentHashMap<>())
+                .put(entry.projectKey(), entry);
+        if (entry.version().getId() != null) {
+            versionsById.put(entry.version().getId().toString(), entry);
+        }
+    }
+
+    /**
+     * @param projectKey Projet de la version, null si elle a été chargée seule depuis Jira
+     */
+    private record Entry(String projectKey, Version version, Instant loadedAt) {
+    }
+}
@@ -0,0 +1,29 @@
+package RAG.OLLAMA.demo.service;
+
+import java.time.Duration;
+
+/**
+ * Appel à Ollama refusé par le {@link LlmScheduler} : trop d'appels en attente pour obtenir
+ * une réponse dans le délai (à réessayer plus tard).
+ */
+public class LlmOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * @param retryAfter Attente estimée avant qu'une place se libère (en-tête Retry-After)
+     */
+    public LlmOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public LlmOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = Duration.ofSeconds(1);
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,359 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.context.ContextRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission des appels à Ollama (chat et embeddings) : au plus llm.scheduler.max-concurrent
+ * appels en cours, les autres attendent dans une file ordonnée par priorité. Une génération en flux
+ * garde sa place jusqu'au dernier token : llm.scheduler.reserved-embedding-slots places ne servent
+ * qu'aux embeddings, pour que les recherches et le cache des questions ne restent pas bloqués
+ * derrière des réponses en cours. Un appel interactif (question) passe devant l'ingestion en
+ * arrière-plan sans l'affamer : il est classé comme s'il était arrivé
+ * llm.scheduler.interactive-head-start plus tôt.
+ * <p>
+ * Un appel dont l'attente prévue (appels en cours et file devant lui, d'après la durée moyenne
+ * de chaque type d'appel : une génération dure mille fois plus qu'un embedding) ou réelle dépasse
+ * le délai de sa priorité est rejeté par une {@link LlmOverloadedException} (503), au lieu de
+ * laisser toutes les requêtes expirer ensemble pendant un pic.
+ * <p>
+ * La priorité est celle du thread appelant ({@link #withPriority}) ; elle suit les tâches des
+ * pools de {@link PipelineMetrics#propagating} et les flux Reactor.
+ */
+@Service
+public class LlmScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(LlmScheduler.class);
+
+    public enum Priority {INTERACTIVE, BACKGROUND}
+
+    /**
+     * Type d'appel, dont la durée moyenne est suivie séparément
+     */
+    public enum CallType {CHAT, EMBEDDING}
+
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor("llm.priority", CURRENT_PRIORITY);
+    }
+
+    // Poids de la dernière durée d'appel dans la moyenne glissante
+    private static final double SERVICE_TIME_WEIGHT = 0.2;
+
+    private final PipelineMetrics metrics;
+    private final int maxConcurrent;
+    // Places utilisables par les générations, les autres étant réservées aux embeddings
+    private final int maxConcurrentChat;
+    private final long interactiveHeadStartNanos;
+    private final Duration interactiveMaxQueueTime;
+    private final Duration backgroundMaxQueueTime;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> queue = new TreeSet<>(
+            Comparator.comparingLong(Waiter::rank).thenComparingLong(Waiter::sequence));
+    private int running;
+    private final int[] runningByType = new int[CallType.values().length];
+    private long sequence;
+    private final double[] averageServiceNanos = new double[CallType.values().length];
+
+    public LlmScheduler(
+            PipelineMetrics metrics,
+            @Value("${llm.scheduler.max-concurrent:3}") int maxConcurrent,
+            @Value("${llm.scheduler.reserved-embedding-slots:1}") int reservedEmbeddingSlots,
+            @Value("${llm.scheduler.interactive-head-start:30s}") Duration interactiveHeadStart,
+            @Value("${llm.scheduler.max-queue-time.interactive:15s}") Duration interactiveMaxQueueTime,
+            @Value("${llm.scheduler.max-queue-time.background:5m}") Duration backgroundMaxQueueTime) {
+        this.metrics = metrics;
+        this.maxConcurrent = maxConcurrent;
+        // Au moins une place reste aux générations
+        this.maxConcurrentChat = Math.max(1, maxConcurrent - reservedEmbeddingSlots);
+        this.interactiveHeadStartNanos = interactiveHeadStart.toNanos();
+        this.interactiveMaxQueueTime = interactiveMaxQueueTime;
+        this.backgroundMaxQueueTime = backgroundMaxQueueTime;
+        metrics.gauge("llm.scheduler.queued", this::queued);
+        metrics.gauge("llm.scheduler.running", this::running);
+    }
+
+    /**
+     * @return Priorité du thread courant (interactive par défaut : requêtes HTTP)
+     */
+    public static Priority currentPriority() {
+        Priority priority = CURRENT_PRIORITY.get();
+        return priority != null ? priority : Priority.INTERACTIVE;
+    }
+
+    /**
+     * Exécute work avec la priorité donnée pour tous les appels à Ollama qu'il déclenche
+     */
+    public static void withPriority(Priority priority, Runnable work) {
+        Priority previous = CURRENT_PRIORITY.get();
+        CURRENT_PRIORITY.set(priority);
+        try {
+            work.run();
+        } finally {
+            if (previous != null) {
+                CURRENT_PRIORITY.set(previous);
+            } else {
+                CURRENT_PRIORITY.remove();
+            }
+        }
+    }
+
+    /**
+     * Attend une place et exécute l'appel
+     *
+     * @throws LlmOverloadedException si l'attente dépasse le délai de la priorité courante
+     */
+    public <T> T call(CallType type, Supplier<T> work) {
+        Permit permit = acquire(currentPriority(), type);
+        try {
+            return work.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Attend une place pour un appel qui se termine plus tard (flux de tokens)
+     *
+     * @return Place, à libérer à la fin de l'appel
+     */
+    public Permit acquire(Priority priority, CallType type) {
+        CompletableFuture<Permit> admission = admit(priority, type);
+        try {
+            return admission.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(admission);
+            throw new LlmOverloadedException("Interrupted while waiting for the language model", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Demande une place sans bloquer : la réponse est rejetée tout de suite si l'attente prévue
+     * est trop longue, ou plus tard si l'attente réelle dépasse le délai
+     */
+    public CompletableFuture<Permit> admit(Priority priority, CallType type) {
+        Duration maxQueueTime = priority == Priority.INTERACTIVE ? interactiveMaxQueueTime : backgroundMaxQueueTime;
+        Waiter waiter;
+        lock.lock();
+        try {
+            // Pas de passe-droit : une demande de la file qui peut démarrer reçoit la place d'abord
+            if (canRun(type) && firstRunnable() == null) {
+                running++;
+                runningByType[type.ordinal()]++;
+                return CompletableFuture.completedFuture(new Permit(type));
+            }
+            if (expectedWaitNanos(priority, type) > maxQueueTime.toNanos()) {
+                recordShed(priority, type, "expected");
+                return CompletableFuture.failedFuture(overloaded(type));
+            }
+            long now = System.nanoTime();
+            waiter = new Waiter(priority, type, now - (priority == Priority.INTERACTIVE ? interactiveHeadStartNanos : 0),
+                    sequence++, now, new CompletableFuture<>());
+            queue.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture<Permit> admission = waiter.admission();
+        // Demande expirée ou annulée : elle quitte la file
+        admission.whenComplete((permit, error) -> {
+            if (error != null) {
+                remove(waiter);
+            }
+        });
+        CompletableFuture.delayedExecutor(maxQueueTime.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (admission.completeExceptionally(overloaded(type))) {
+                recordShed(priority, type, "timeout");
+            }
+        });
+        return admission;
+    }
+
+    /**
+     * Libère la place d'une demande abandonnée (annulée, ou accordée trop tard)
+     */
+    public static void abandon(CompletableFuture<Permit> admission) {
+        if (!admission.cancel(false)) {
+            admission.thenAccept(Permit::release);
+        }
+    }
+
+    private boolean canRun(CallType type) {
+        return running < maxConcurrent
+                && (type != CallType.CHAT || runningByType[CallType.CHAT.ordinal()] < maxConcurrentChat);
+    }
+
+    /**
+     * @return Première demande de la file, dans l'ordre des priorités, qui peut démarrer, ou null
+     */
+    private Waiter firstRunnable() {
+        for (Waiter waiter : queue) {
+            if (canRun(waiter.type())) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Attente prévue avant qu'une place se libère pour un nouvel appel : en moyenne la moitié des
+     * appels en cours du même type reste à faire, plus les appels de la file du même type qui
+     * passeront devant lui. Les générations ont maxConcurrentChat places ; les embeddings ont
+     * celles que les générations n'occupent pas.
+     */
+    private long expectedWaitNanos(Priority priority, CallType type) {
+        double average = averageServiceNanos[type.ordinal()];
+        double work = runningByType[type.ordinal()] * average / 2;
+        for (Waiter waiter : queue) {
+            if (waiter.type() == type && (priority == Priority.BACKGROUND || waiter.priority() == Priority.INTERACTIVE)) {
+                work += average;
+            }
+        }
+        int slots = type == CallType.CHAT
+                ? maxConcurrentChat
+                : maxConcurrent - runningByType[CallType.CHAT.ordinal()];
+        return (long) (work / Math.max(1, slots));
+    }
+
+    private void recordShed(Priority priority, CallType type, String reason) {
+        metrics.counter("llm.scheduler.shed", "priority", priority.name().toLowerCase(),
+                "type", type.name().toLowerCase(), "reason", reason).increment();
+        logger.warn("Language model overloaded: {} {} call rejected ({} queue time too long)", priority, type, reason);
+    }
+
+    private LlmOverloadedException overloaded(CallType type) {
+        lock.lock();
+        try {
+            // Temps pour écouler les appels en cours et la file actuelle, au moins une seconde
+            long drainNanos = expectedWaitNanos(Priority.BACKGROUND, type);
+            Duration retryAfter = Duration.ofSeconds(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(drainNanos)));
+            return new LlmOverloadedException("The language model is overloaded, please retry later", retryAfter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Waiter waiter) {
+        lock.lock();
+        try {
+            queue.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(CallType type, long serviceNanos) {
+        lock.lock();
+        try {
+            double average = averageServiceNanos[type.ordinal()];
+            averageServiceNanos[type.ordinal()] = average == 0
+                    ? serviceNanos
+                    : average + SERVICE_TIME_WEIGHT * (serviceNanos - average);
+            running--;
+            runningByType[type.ordinal()]--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    /**
+     * Donne leur place aux demandes de la file qui peuvent démarrer : une génération libérée peut
+     * laisser passer un embedding, et inversement
+     */
+    private void dispatch() {
+        while (true) {
+            Waiter next;
+            lock.lock();
+            try {
+                next = firstRunnable();
+                if (next == null) {
+                    return;
+                }
+                queue.remove(next);
+                running++;
+                runningByType[next.type().ordinal()]++;
+            } finally {
+                lock.unlock();
+            }
+            // Place accordée hors du verrou (le flux démarre dans ce thread)
+            if (next.admission().complete(new Permit(next.type()))) {
+                metrics.timer("llm.scheduler.wait", "priority", next.priority().name().toLowerCase())
+                        .record(System.nanoTime() - next.enqueuedAt(), TimeUnit.NANOSECONDS);
+            } else {
+                // Demande expirée ou annulée entre-temps
+                lock.lock();
+                try {
+                    running--;
+                    runningByType[next.type().ordinal()]--;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int running() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    /**
+     * Place accordée : à libérer une seule fois (les libérations suivantes sont ignorées)
+     */
+    public final class Permit {
+        private final CallType type;
+        private final long grantedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(CallType type) {
+            this.type = type;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                LlmScheduler.this.release(type, System.nanoTime() - grantedAt);
+            }
+        }
+    }
+
+    private record Waiter(Priority priority, CallType type, long rank, long sequence, long enqueuedAt,
+                          CompletableFuture<Permit> admission) {
+    }
+}
@@ -0,0 +1,47 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.observation.Observation;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * Modèle de chat qui mesure chaque génération (étape "generation" de {@link PipelineMetrics})
+ * et le débit en tokens/s rapporté par Ollama dans les métadonnées de la réponse. En streaming,
+ * ces métadonnées n'arrivent qu'avec le dernier morceau.
+ */
+public class MeteredChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final PipelineMetrics metrics;
+
+    public MeteredChatModel(ChatModel delegate, PipelineMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        ChatResponse response = metrics.observe("generation", () -> delegate.call(prompt));
+        metrics.recordGeneration(response.getMetadata());
+        return response;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            Observation observation = metrics.stage("generation").start();
+            return delegate.stream(prompt)
+                    .doOnNext(response -> metrics.recordGeneration(response.getMetadata()))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -2,22 +2,32 @@ package RAG.OLLAMA.demo.service;
 
 import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.domain.BasicProject;
 import com.atlassian.jira.rest.client.api.domain.Comment;
 import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.Project;
 import com.atlassian.jira.rest.client.api.domain.SearchResult;
 import com.atlassian.jira.rest.client.api.domain.Version;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClient;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -25,6 +35,10 @@ import java.util.stream.StreamSupport;
 public class MyJiraClient {
     private static final Logger logger = LoggerFactory.getLogger(MyJiraClient.class);
 
+    // Champs utilisés par les documents RAG ; created, updated et project sont requis par le parseur JRJC
+    private static final Set<String> SEARCH_FIELDS =
+            Set.of("summary", "issuetype", "status", "created", "updated", "project");
+
     @Value("${jira.url}")
     private String jiraUrl;
 
@@ -34,16 +48,43 @@ public class MyJiraClient {
     @Value("${jira.password}")
     private String password;
 
+    @Value("${jira.search.page-size:100}")
+    private int searchPageSize;
+
+    @Value("${jira.search.concurrency:4}")
+    private int searchConcurrency;
+
+    @Value("${jira.client.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${jira.client.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${jira.client.socket-timeout:10s}")
+    private Duration socketTimeout;
+
+    private final JiraCallGuard callGuard;
+
     private JiraRestClient restClient;
 
+    public MyJiraClient(JiraCallGuard callGuard) {
+        this.callGuard = callGuard;
+    }
+
     @PostConstruct
     public void init() {
         this.restClient = getJiraRestClient();
     }
 
+    @PreDestroy
+    public void close() throws IOException {
+        restClient.close();
+    }
+
     private JiraRestClient getJiraRestClient() {
-        return new AsynchronousJiraRestClientFactory()
-                .createWithBasicHttpAuthentication(getJiraUri(), this.username, this.password);
+        // Pool de connexions et délais de connexion/lecture configurés, au lieu des valeurs par défaut de JRJC
+        return new AsynchronousJiraRestClient(getJiraUri(), JiraHttpClientFactory.create(
+                getJiraUri(), this.username, this.password, maxConnections, connectTimeout, socketTimeout));
     }
 
     private URI getJiraUri() {
@@ -64,16 +105,15 @@ public class MyJiraClient {
         issueBuilder.setIssueTypeId(issueType);
 
         IssueInput newIssue = issueBuilder.build();
-        return issueClient.createIssue(newIssue).claim().getKey();
+        return callGuard.call("createIssue", () -> issueClient.createIssue(newIssue)).getKey();
     }
 
     public void updateIssueDescription(String issueKey, String newDescription) {
         IssueInput input = new IssueInputBuilder()
                 .setDescription(newDescription)
                 .build();
-        restClient.getIssueClient()
-                .updateIssue(issueKey, input)
-                .claim();
+        callGuard.call("updateIssue " + issueKey, () -> restClient.getIssueClient()
+                .updateIssue(issueKey, input));
     }
 
     /**
@@ -84,25 +124,78 @@ public class MyJiraClient {
      */
     public List<Issue> getTicketsByVersion(String versionId) {
         List<Issue> tickets = new ArrayList<>();
+        try {
+            forEachTicketPageOfVersion(versionId, tickets::addAll);
+            return tickets;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching tickets for version: " + versionId, e);
+        }
+    }
 
+    /**
+     * Parcourt les tickets d'une version page par page. Les pages suivantes sont demandées
+     * en parallèle (au plus jira.search.concurrency à la fois) pendant que la page courante
+     * est traitée, et seuls les champs utilisés par les documents RAG sont demandés.
+     *
+     * @param versionId    L'identifiant ou le nom de la version Jira
+     * @param pageConsumer Appelé pour chaque page, dans l'ordre
+     * @return Nombre total de tickets de la version
+     */
+    public int forEachTicketPageOfVersion(String versionId, IssuePageConsumer pageConsumer) throws InterruptedException {
         try {
             // Requête JQL pour récupérer les tickets de cette version
             String jql = "fixVersion = '" + versionId + "'";
 
-            // Exécuter la recherche (max 500 tickets)
-            SearchResult result = restClient.getSearchClient()
-                    .searchJql(jql, 500, 0, null)
-                    .claim();
-
-            // Ajouter les résultats à notre liste
-            result.getIssues().forEach(tickets::add);
+            SearchResult firstPage = searchPage(jql, 0, searchPageSize).await();
+            pageConsumer.accept(toList(firstPage.getIssues()));
+
+            // Jira peut plafonner la taille de page en dessous de celle demandée
+            int pageSize = firstPage.getMaxResults() > 0 ? firstPage.getMaxResults() : searchPageSize;
+            int total = firstPage.getTotal();
+            int nextStart = pageSize;
+            Deque<JiraCallGuard.GuardedCall<SearchResult>> inFlight = new ArrayDeque<>();
+            try {
+                while (nextStart < total || !inFlight.isEmpty()) {
+                    while (nextStart < total && inFlight.size() < searchConcurrency) {
+                        inFlight.add(searchPage(jql, nextStart, pageSize));
+                        nextStart += pageSize;
+                    }
+                    pageConsumer.accept(toList(inFlight.poll().await().getIssues()));
+                }
+            } finally {
+                // Pages encore en cours si le traitement a échoué
+                inFlight.forEach(JiraCallGuard.GuardedCall::cancel);
+            }
 
-            return tickets;
+            logger.info("Fetched {} tickets for version {} in pages of {}", total, versionId, pageSize);
+            return total;
+        } catch (InterruptedException | JiraUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Erreur lors de la récupération des tickets pour la version: " + versionId, e);
         }
     }
 
+    private JiraCallGuard.GuardedCall<SearchResult> searchPage(String jql, int startAt, int pageSize) {
+        return callGuard.begin("searchJql " + jql + " from " + startAt,
+                () -> restClient.getSearchClient().searchJql(jql, pageSize, startAt, SEARCH_FIELDS));
+    }
+
+    private static List<Issue> toList(Iterable<Issue> issues) {
+        List<Issue> list = new ArrayList<>();
+        issues.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Traitement d'une page de tickets
+     */
+    @FunctionalInterface
+    public interface IssuePageConsumer {
+        void accept(List<Issue> page) throws InterruptedException;
+    }
+
     /**
      * Récupère les informations détaillées sur une version Jira spécifique
      *
@@ -117,9 +210,8 @@ public class MyJiraClient {
             logger.info("Looking for version '{}' in project '{}'", versionId, projectKey);
 
             // Récupérer toutes les versions du projet
-            Iterable<Version> versions = restClient.getProjectClient()
-                    .getProject(projectKey)
-                    .claim()
+            Iterable<Version> versions = callGuard.call("getProject " + projectKey,
+                            () -> restClient.getProjectClient().getProject(projectKey))
                     .getVersions();
 
             // Chercher la version spécifique par nom ou ID
@@ -131,6 +223,8 @@ public class MyJiraClient {
             }
 
             throw new RuntimeException("Version not found: " + versionId);
+        } catch (JiraUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error retrieving version information: " + versionId, e);
         }
@@ -152,9 +246,8 @@ public class MyJiraClient {
         try {
             // On pourrait faire une recherche JQL pour trouver le projet contenant cette version
             String jql = "fixVersion = '" + versionId + "'";
-            SearchResult result = restClient.getSearchClient()
-                    .searchJql(jql, 1, 0, null)
-                    .claim();
+            SearchResult result = callGuard.call("searchJql " + jql,
+                    () -> restClient.getSearchClient().searchJql(jql, 1, 0, null));
 
             if (result.getIssues().iterator().hasNext()) {
                 return result.getIssues().iterator().next().getProject().getKey();
@@ -168,25 +261,69 @@ public class MyJiraClient {
         throw new RuntimeException("Unable to determine project key from version ID: " + versionId);
     }
 
+    /**
+     * @return Clés de tous les projets visibles par l'utilisateur Jira
+     */
+    public List<String> getProjectKeys() {
+        return StreamSupport.stream(callGuard.call("getAllProjects",
+                        () -> restClient.getProjectClient().getAllProjects()).spliterator(), false)
+                .map(BasicProject::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Récupère les versions de tous les projets, au plus jira.search.concurrency projets étant demandés en parallèle
+     *
+     * @return Versions par clé de projet
+     */
+    public Map<String, List<Version>> getVersionsByProject() {
+        Map<String, List<Version>> versions = new LinkedHashMap<>();
+        Deque<String> remaining = new ArrayDeque<>(getProjectKeys());
+        Map<String, JiraCallGuard.GuardedCall<Project>> inFlight = new LinkedHashMap<>();
+        try {
+            while (!remaining.isEmpty() || !inFlight.isEmpty()) {
+                while (!remaining.isEmpty() && inFlight.size() < searchConcurrency) {
+                    String projectKey = remaining.poll();
+                    inFlight.put(projectKey, callGuard.begin("getProject " + projectKey,
+                            () -> restClient.getProjectClient().getProject(projectKey)));
+                }
+                String projectKey = inFlight.keySet().iterator().next();
+                Project project = inFlight.remove(projectKey).await();
+
+                List<Version> projectVersions = new ArrayList<>();
+                project.getVersions().forEach(projectVersions::add);
+                versions.put(projectKey, projectVersions);
+            }
+            return versions;
+        } finally {
+            inFlight.values().forEach(JiraCallGuard.GuardedCall::cancel);
+        }
+    }
+
     public Issue getIssue(String issueKey) {
-        return restClient.getIssueClient()
-                .getIssue(issueKey)
-                .claim();
+        return callGuard.call("getIssue " + issueKey, () -> restClient.getIssueClient()
+                .getIssue(issueKey));
     }
 
     public void deleteIssue(String issueKey, boolean deleteSubtasks) {
-        restClient.getIssueClient()
-                .deleteIssue(issueKey, deleteSubtasks)
-                .claim();
+        callGuard.call("deleteIssue " + issueKey, () -> restClient.getIssueClient()
+                .deleteIssue(issueKey, deleteSubtasks));
     }
 
     public void addComment(Issue issue, String commentBody) {
-        restClient.getIssueClient()
-                .addComment(issue.getCommentsUri(), Comment.valueOf(commentBody));
+        callGuard.call("addComment " + issue.getKey(), () -> restClient.getIssueClient()
+                .addComment(issue.getCommentsUri(), Comment.valueOf(commentBody)));
     }
 
     public List<Comment> getAllComments(String issueKey) {
-        return StreamSupport.stream(getIssue(issueKey).getComments().spliterator(), false)
+        return getAllComments(getIssue(issueKey));
+    }
+
+    /**
+     * @param issue Issue déjà récupérée : ses commentaires sont inclus dans la réponse de getIssue
+     */
+    public List<Comment> getAllComments(Issue issue) {
+        return StreamSupport.stream(issue.getComments().spliterator(), false)
                 .collect(Collectors.toList());
     }
 }
\ No newline at end of file
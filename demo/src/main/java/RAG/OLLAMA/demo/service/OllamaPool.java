@@ -0,0 +1,298 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serveurs Ollama interchangeables pour un même modèle (génération ou embeddings). Chaque appel
+ * part vers le serveur sain le moins chargé : le moins d'appels en cours (least-outstanding), ou
+ * le plus petit (appels en cours + 1) × durée moyenne d'un appel (latency-weighted).
+ * <p>
+ * Un appel en échec à cause du serveur (erreur d'I/O, délai dépassé, réponse 5xx) est relancé sur un
+ * autre serveur (au plus ollama.pools.max-attempts essais) ; en streaming, seulement si aucun token
+ * n'a encore été reçu. Une erreur de l'appelant (4xx : modèle inconnu, contexte trop long...) est
+ * renvoyée telle quelle et ne compte pas contre le serveur. Un serveur est écarté après
+ * ollama.pools.failure-threshold échecs consécutifs et réintégré par le contrôle de santé
+ * périodique (GET /api/tags, limité à ollama.pools.health-check-timeout). Si tous sont écartés,
+ * ils sont quand même essayés.
+ *
+ * @param <M> Modèle Spring AI construit pour chaque serveur
+ */
+public class OllamaPool<M> {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaPool.class);
+
+    public enum Strategy {LEAST_OUTSTANDING, LATENCY_WEIGHTED}
+
+    // Poids de la dernière durée d'appel dans la moyenne glissante
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    // Statut HTTP en tête du message des erreurs levées par le gestionnaire d'erreurs d'OllamaApi
+    private static final Pattern STATUS_IN_MESSAGE = Pattern.compile("^\\[?(\\d{3})\\b");
+
+    private final String name;
+    private final List<Backend<M>> backends;
+    private final Strategy strategy;
+    private final int maxAttempts;
+    private final int failureThreshold;
+    private final Duration healthCheckTimeout;
+    private final PipelineMetrics metrics;
+
+    public OllamaPool(String name, List<Backend<M>> backends, Strategy strategy,
+                      int maxAttempts, int failureThreshold, Duration healthCheckTimeout, PipelineMetrics metrics) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("Ollama pool " + name + " has no endpoint");
+        }
+        this.name = name;
+        this.backends = List.copyOf(backends);
+        this.strategy = strategy;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.metrics = metrics;
+        for (Backend<M> backend : this.backends) {
+            metrics.gauge("ollama.pool.outstanding", backend.outstanding::get, "pool", name, "endpoint", backend.url);
+            metrics.gauge("ollama.pool.healthy", () -> backend.healthy ? 1 : 0, "pool", name, "endpoint", backend.url);
+        }
+        logger.info("Ollama pool {}: {} ({})", name,
+                this.backends.stream().map(Backend::url).toList(), strategy.name().toLowerCase());
+    }
+
+    /**
+     * Appel bloquant, relancé sur un autre serveur en cas d'échec
+     */
+    public <T> T call(Function<M, T> work) {
+        Set<Backend<M>> tried = new HashSet<>();
+        RuntimeException lastError = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Backend<M> backend = select(tried);
+            if (backend == null) {
+                break;
+            }
+            tried.add(backend);
+            long start = backend.begin();
+            try {
+                T result = work.apply(backend.model);
+                succeeded(backend, start);
+                return result;
+            } catch (RuntimeException e) {
+                if (!isBackendFailure(e)) {
+                    // Erreur de l'appelant : un autre serveur répondrait la même chose
+                    throw e;
+                }
+                failed(backend, e);
+                lastError = e;
+            } finally {
+                // Quelle que soit l'issue (y compris une Error) : sinon le serveur paraîtrait chargé pour toujours
+                backend.end();
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * Appel en streaming : relancé sur un autre serveur tant qu'aucun élément n'a été émis
+     */
+    public <T> Flux<T> stream(Function<M, Flux<T>> work) {
+        return stream(work, new HashSet<>(), 1);
+    }
+
+    private <T> Flux<T> stream(Function<M, Flux<T>> work, Set<Backend<M>> tried, int attempt) {
+        return Flux.defer(() -> {
+            Backend<M> backend = select(tried);
+            tried.add(backend);
+            long start = backend.begin();
+            AtomicBoolean emitted = new AtomicBoolean();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            // Une exception levée en créant le flux devient une erreur du flux : doFinally la voit aussi
+            return Flux.defer(() -> work.apply(backend.model))
+                    .doOnNext(element -> emitted.set(true))
+                    .doOnError(error::set)
+                    .doFinally(signal -> {
+                        // Fin, erreur ou annulation : l'appel n'est plus en cours
+                        backend.end();
+                        if (signal == SignalType.ON_COMPLETE) {
+                            succeeded(backend, start);
+                        } else if (signal == SignalType.ON_ERROR && isBackendFailure(error.get())) {
+                            failed(backend, error.get());
+                        }
+                    })
+                    .onErrorResume(e -> !emitted.get() && isBackendFailure(e)
+                                    && attempt < maxAttempts && tried.size() < backends.size(),
+                            e -> stream(work, tried, attempt + 1));
+        });
+    }
+
+    /**
+     * Sonde chaque serveur en parallèle : un serveur qui répond dans le délai est réintégré, sinon
+     * écarté. Une sonde sans réponse est interrompue, elle ne bloque pas les contrôles suivants.
+     */
+    @Scheduled(fixedDelayString = "${ollama.pools.health-check-interval:10s}")
+    public void checkHealth() {
+        ExecutorService probes = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Map<Backend<M>, Future<?>> results = new LinkedHashMap<>();
+            for (Backend<M> backend : backends) {
+                results.put(backend, probes.submit(backend.api::listModels));
+            }
+            long deadline = System.nanoTime() + healthCheckTimeout.toNanos();
+            for (Map.Entry<Backend<M>, Future<?>> result : results.entrySet()) {
+                try {
+                    result.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    markHealthy(result.getKey());
+                } catch (ExecutionException e) {
+                    markUnhealthy(result.getKey(), e.getCause());
+                } catch (TimeoutException e) {
+                    markUnhealthy(result.getKey(), new TimeoutException("no answer to /api/tags within " + healthCheckTimeout));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            probes.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true si l'échec vient du serveur (I/O, délai, 5xx) et non de la requête (4xx)
+     */
+    static boolean isBackendFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+            if (cause instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+            if (cause instanceof TransientAiException || cause instanceof ResourceAccessException
+                    || cause instanceof WebClientRequestException
+                    || cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof NonTransientAiException) {
+                return false;
+            }
+            Matcher status = STATUS_IN_MESSAGE.matcher(String.valueOf(cause.getMessage()));
+            if (status.find()) {
+                return Integer.parseInt(status.group(1)) >= 500;
+            }
+        }
+        return false;
+    }
+
+    private Backend<M> select(Set<Backend<M>> tried) {
+        Comparator<Backend<M>> load = strategy == Strategy.LATENCY_WEIGHTED
+                ? Comparator.comparingDouble(Backend::latencyScore)
+                : Comparator.comparingInt(backend -> backend.outstanding.get());
+        List<Backend<M>> candidates = backends.stream().filter(backend -> !tried.contains(backend)).toList();
+        return candidates.stream()
+                .filter(backend -> backend.healthy)
+                .min(load)
+                .orElseGet(() -> candidates.stream().min(load).orElse(null));
+    }
+
+    private void succeeded(Backend<M> backend, long start) {
+        long latencyNanos = System.nanoTime() - start;
+        backend.recordLatency(latencyNanos);
+        backend.consecutiveFailures.set(0);
+        markHealthy(backend);
+        metrics.timer("ollama.pool.requests", "pool", name, "endpoint", backend.url)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void failed(Backend<M> backend, Throwable error) {
+        metrics.counter("ollama.pool.failures", "pool", name, "endpoint", backend.url).increment();
+        logger.warn("Ollama {} call to {} failed: {}", name, backend.url, error.getMessage());
+        if (backend.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            markUnhealthy(backend, error);
+        }
+    }
+
+    private void markHealthy(Backend<M> backend) {
+        if (!backend.healthy) {
+            backend.consecutiveFailures.set(0);
+            backend.healthy = true;
+            logger.info("Ollama {} endpoint {} is back in the pool", name, backend.url);
+        }
+    }
+
+    private void markUnhealthy(Backend<M> backend, Throwable error) {
+        if (backend.healthy) {
+            backend.healthy = false;
+            logger.warn("Ollama {} endpoint {} removed from the pool: {}", name, backend.url, error.getMessage());
+        }
+    }
+
+    /**
+     * Un serveur Ollama : son client (contrôle de santé) et le modèle qui l'utilise
+     */
+    public static final class Backend<M> {
+        private final String url;
+        private final OllamaApi api;
+        private final M model;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile double averageLatencyNanos;
+
+        public Backend(String url, OllamaApi api, M model) {
+            this.url = url;
+            this.api = api;
+            this.model = model;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        private long begin() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end() {
+            outstanding.decrementAndGet();
+        }
+
+        private synchronized void recordLatency(long latencyNanos) {
+            averageLatencyNanos = averageLatencyNanos == 0
+                    ? latencyNanos
+                    : averageLatencyNanos + LATENCY_WEIGHT * (latencyNanos - averageLatencyNanos);
+        }
+
+        // Serveur pas encore mesuré : départagé par ses appels en cours jusqu'à sa première réponse
+        private double latencyScore() {
+            return (outstanding.get() + 1) * Math.max(averageLatencyNanos, 1);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package RAG.OLLAMA.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.ai.reader.pdf.layout.PDFLayoutTextStripperByArea;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingestion d'un PDF en pipeline : les pages sont extraites en parallèle, découpées dès
+ * leur extraction, puis confiées à l'EmbeddingWriter par lots pendant que l'extraction continue.
+ * Les files entre les étapes sont bornées pour que l'extraction attende l'embedding.
+ */
+@Service
+public class PdfIngestionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(PdfIngestionPipeline.class);
+
+    private static final String PAGE_REGION = "pdfPageRegion";
+
+    // Marqueur de fin envoyé par chaque extracteur (comparé par identité)
+    private static final List<Document> END_OF_PAGES = Collections.unmodifiableList(new ArrayList<>());
+
+    private final EmbeddingWriter embeddingWriter;
+    private final PipelineMetrics metrics;
+    private final int parserThreads;
+    private final int queueCapacity;
+    private final ExecutorService parserExecutor;
+
+    public PdfIngestionPipeline(
+            EmbeddingWriter embeddingWriter,
+            PipelineMetrics metrics,
+            @Value("${pdf.ingestion.parser-threads:0}") int parserThreads,
+            @Value("${pdf.ingestion.queue-capacity:64}") int queueCapacity) {
+        this.embeddingWriter = embeddingWriter;
+        this.metrics = metrics;
+        this.parserThreads = parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        // Extraction liée au CPU : threads de plateforme, un par coeur (des threads virtuels n'y gagneraient rien)
+        AtomicInteger counter = new AtomicInteger();
+        this.parserExecutor = metrics.propagating(Executors.newFixedThreadPool(this.parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Extrait, découpe et stocke toutes les pages d'un PDF
+     *
+     * @param pdf      Fichier PDF sur disque
+     * @param fileName Nom d'origine du fichier, ajouté aux métadonnées
+     * @param metadata Métadonnées ajoutées à chaque chunk
+     * @param listener Suivi de l'avancement (pages extraites, chunks stockés)
+     * @return Bilan de l'écriture des chunks
+     */
+    public EmbeddingWriter.WriteResult ingest(Path pdf, String fileName, Map<String, Object> metadata,
+                                              ProgressListener listener) throws IOException {
+        int pageCount;
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            pageCount = document.getNumberOfPages();
+        }
+        listener.pagesDiscovered(pageCount);
+        if (pageCount == 0) {
+            return new EmbeddingWriter.WriteResult(0, 0);
+        }
+
+        // Chaque extracteur traite une plage contiguë de pages avec son propre PDDocument
+        int workers = Math.min(parserThreads, pageCount);
+        int pagesPerWorker = (pageCount + workers - 1) / workers;
+        BlockingQueue<List<Document>> chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Future<?>> parserTasks = new ArrayList<>();
+        for (int start = 1; start <= pageCount; start += pagesPerWorker) {
+            int firstPage = start;
+            int lastPage = Math.min(pageCount, start + pagesPerWorker - 1);
+            parserTasks.add(parserExecutor.submit(() -> {
+                try {
+                    extractPages(pdf, fileName, metadata, firstPage, lastPage, chunkQueue, listener);
+                } finally {
+                    chunkQueue.put(END_OF_PAGES);
+                }
+                return null;
+            }));
+        }
+
+        int batchSize = embeddingWriter.batchSize();
+        List<CompletableFuture<EmbeddingWriter.WriteResult>> embeddingTasks = new ArrayList<>();
+        EmbeddingWriter.WriteResult result;
+        try {
+            List<Document> batch = new ArrayList<>(batchSize);
+            int finishedWorkers = 0;
+            while (finishedWorkers < parserTasks.size()) {
+                List<Document> chunks = chunkQueue.take();
+                if (chunks == END_OF_PAGES) {
+                    finishedWorkers++;
+                    continue;
+                }
+                for (Document chunk : chunks) {
+                    batch.add(chunk);
+                    if (batch.size() >= batchSize) {
+                        // Bloque le découpage tant que trop de lots sont en cours d'embedding
+                        embeddingTasks.add(submit(batch, listener));
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                embeddingTasks.add(submit(batch, listener));
+            }
+
+            awaitAll(parserTasks);
+            result = EmbeddingWriter.WriteResult.sum(embeddingTasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while ingesting " + fileName, e);
+        } finally {
+            parserTasks.forEach(task -> task.cancel(true));
+        }
+
+        logger.info("Ingested {} pages of {} into {} chunks ({} failed) using {} parser threads",
+                pageCount, fileName, result.stored(), result.failed(), workers);
+        return result;
+    }
+
+    private void extractPages(Path pdf, String fileName, Map<String, Object> metadata, int firstPage, int lastPage,
+                              BlockingQueue<List<Document>> chunkQueue, ProgressListener listener)
+            throws IOException, InterruptedException {
+        // PDDocument, le stripper et le splitter ne sont pas partagés entre threads
+        TokenTextSplitter splitter = new TokenTextSplitter();
+        ExtractedTextFormatter formatter = ExtractedTextFormatter.defaults();
+
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            for (int pageNumber = firstPage; pageNumber <= lastPage; pageNumber++) {
+                PDPage page = document.getPage(pageNumber - 1);
+                String pageText = metrics.observeChecked("pdf.parse", () -> extractText(page));
+                String text = formatter.format(pageText, pageNumber);
+                listener.pageParsed(pageNumber);
+                if (!StringUtils.hasText(text)) {
+                    continue;
+                }
+
+                Map<String, Object> pageMetadata = new HashMap<>(metadata);
+                pageMetadata.put(PagePdfDocumentReader.METADATA_START_PAGE_NUMBER, pageNumber);
+                pageMetadata.put(PagePdfDocumentReader.METADATA_FILE_NAME, fileName);
+
+                List<Document> chunks = withStableIds(
+                        metrics.observe("pdf.split", () -> splitter.split(new Document(text, pageMetadata))), pageNumber);
+                logger.debug("Page {} of {} split into {} chunks", pageNumber, fileName, chunks.size());
+                chunkQueue.put(chunks);
+            }
+        }
+    }
+
+    private CompletableFuture<EmbeddingWriter.WriteResult> submit(List<Document> batch, ProgressListener listener)
+            throws InterruptedException {
+        return embeddingWriter.submit(batch)
+                .whenComplete((result, error) -> {
+                    if (result != null) {
+                        listener.chunksStored(result.stored(), result.failed());
+                    }
+                });
+    }
+
+    private List<Document> withStableIds(List<Document> chunks, int pageNumber) {
+        Object documentId = chunks.isEmpty() ? null : chunks.get(0).getMetadata().get("document_id");
+        if (documentId == null) {
+            return chunks;
+        }
+        // Identifiant dérivé du document, de la page et du rang : une relance remplace au lieu de dupliquer
+        List<Document> identified = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            String id = UUID.nameUUIDFromBytes((documentId + ":" + pageNumber + ":" + i).getBytes(StandardCharsets.UTF_8))
+                    .toString();
+            identified.add(new Document(id, chunk.getText(), chunk.getMetadata()));
+        }
+        return identified;
+    }
+
+    static String extractText(PDPage page) throws IOException {
+        // Même extraction que PagePdfDocumentReader : une région couvrant toute la page
+        PDFLayoutTextStripperByArea stripper = new PDFLayoutTextStripperByArea();
+        PDRectangle mediaBox = page.getMediaBox();
+        stripper.addRegion(PAGE_REGION, new Rectangle(
+                (int) mediaBox.getLowerLeftX(),
+                (int) mediaBox.getLowerLeftY(),
+                (int) mediaBox.getWidth(),
+                (int) mediaBox.getHeight()));
+        stripper.extractRegions(page);
+        return stripper.getTextForRegion(PAGE_REGION);
+    }
+
+    private void awaitAll(List<Future<?>> tasks) throws IOException, InterruptedException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IllegalStateException("PDF ingestion failed", cause);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parserExecutor.shutdownNow();
+    }
+
+    /**
+     * Suivi de l'avancement d'une ingestion. Les méthodes peuvent être appelées depuis plusieurs threads.
+     */
+    public interface ProgressListener {
+        ProgressListener NONE = new ProgressListener() {
+        };
+
+        default void pagesDiscovered(int pageCount) {
+        }
+
+        default void pageParsed(int pageNumber) {
+        }
+
+        default void chunksStored(int stored, int failed) {
+        }
+    }
+}
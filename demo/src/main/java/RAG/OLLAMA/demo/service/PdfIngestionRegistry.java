@@ -0,0 +1,53 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Registre des PDF déjà ingérés, indexé par l'empreinte SHA-256 de leur contenu.
+ * Il est stocké dans la même base que la table vector_store, ce qui permet de
+ * sauter la lecture, le découpage et l'embedding lorsqu'un fichier identique est renvoyé.
+ * La table est créée par Flyway (V5__pdf_ingestion_registry.sql).
+ */
+@Service
+public class PdfIngestionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(PdfIngestionRegistry.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PdfIngestionRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isIngested(String contentHash) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pdf_ingestion_registry WHERE content_hash = ?",
+                Integer.class,
+                contentHash);
+        return count != null && count > 0;
+    }
+
+    /**
+     * @param contentHash Empreinte du PDF
+     * @return Nombre de chunks stockés, ou null si le PDF n'a jamais été ingéré
+     */
+    public Integer findChunkCount(String contentHash) {
+        List<Integer> counts = jdbcTemplate.queryForList(
+                "SELECT chunk_count FROM pdf_ingestion_registry WHERE content_hash = ?",
+                Integer.class,
+                contentHash);
+        return counts.isEmpty() ? null : counts.get(0);
+    }
+
+    public void register(String contentHash, String fileName, int chunkCount) {
+        jdbcTemplate.update(
+                "INSERT INTO pdf_ingestion_registry (content_hash, file_name, chunk_count) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (content_hash) DO NOTHING",
+                contentHash, fileName, chunkCount);
+        logger.info("Registered PDF {} ({}) with {} chunks", fileName, contentHash, chunkCount);
+    }
+}
@@ -4,92 +4,163 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.io.FileSystemResource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public
 class PdfService {
     private static final Logger logger = LoggerFactory.getLogger(PdfService.class);
 
-    private final VectorStore vectorStore;
-    private final ChatModel chatModel;
+    // Valeur de la métadonnée "source" des chunks de PDF
+    static final String PDF_SOURCE = "uploaded-pdf";
 
-    public PdfService(VectorStore vectorStore, ChatModel chatModel) {
-        this.vectorStore = vectorStore;
+    private final HybridRetriever retriever;
+    private final ContextAssembler contextAssembler;
+    private final ChatModel chatModel;
+    private final PdfIngestionRegistry ingestionRegistry;
+    private final PdfUploadStaging uploadStaging;
+    private final PdfIngestionPipeline ingestionPipeline;
+    private final AnswerCache answerCache;
+
+    public PdfService(HybridRetriever retriever, ContextAssembler contextAssembler, ChatModel chatModel, PdfIngestionRegistry ingestionRegistry,
+                      PdfUploadStaging uploadStaging, PdfIngestionPipeline ingestionPipeline, AnswerCache answerCache) {
+        this.retriever = retriever;
+        this.contextAssembler = contextAssembler;
         this.chatModel = chatModel;
+        this.ingestionRegistry = ingestionRegistry;
+        this.uploadStaging = uploadStaging;
+        this.ingestionPipeline = ingestionPipeline;
+        this.answerCache = answerCache;
     }
 
     public String processPdfAndAnswerQuestion(MultipartFile file, String question) throws IOException {
-        // Convertir le MultipartFile en fichier temporaire
-        File tempFile = convertMultiPartToFile(file);
+        // Écrire l'upload sur disque (sans byte[] en mémoire) et calculer son empreinte
+        String documentId;
+        try (PdfUploadStaging.StagedUpload upload = uploadStaging.stage(file)) {
+            ingestDocument(upload, PdfIngestionPipeline.ProgressListener.NONE);
+            documentId = upload.contentHash();
+        }
 
-        try {
-            // Configurer le lecteur PDF
-            PdfDocumentReaderConfig config = PdfDocumentReaderConfig.builder()
-                    .withPagesPerDocument(1)
-                    .build();
-
-            // Créer le lecteur PDF avec le fichier temporaire
-            PagePdfDocumentReader reader = new PagePdfDocumentReader(new FileSystemResource(tempFile), config);
-
-            // Diviser le texte en morceaux
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<Document> documents = splitter.apply(reader.get());
-
-            // Ajouter des métadonnées et enregistrer le contenu pour débogage
-            documents.forEach(doc -> {
-                doc.getMetadata().put("source", "uploaded-pdf");
-                logger.info("Content length: {}", doc.getText().length());
-            });
-
-            // Sauvegarder dans le vectorStore
-            vectorStore.accept(documents);
-            logger.info("Loaded {} documents from uploaded PDF", documents.size());
-
-            // Récupérer les documents similaires
-            List<Document> similarDocuments = vectorStore.similaritySearch(question);
-
-            // Extraire le texte du document
-            String documentContext = similarDocuments.stream()
-                    .map(this::extractDocumentText)
-                    .collect(Collectors.joining("\n\n"));
-
-            // Préparer la requête complète
-            String fullPrompt = String.format(
-                    "Your task is to answer questions about the uploaded document, using the following document context:\n\n" +
-                            "CONTEXT:\n%s\n\n" +
-                            "QUESTION:\n%s",
-                    documentContext,
-                    question
-            );
-
-            // Appeler le modèle de chat avec la requête complète
-            String response = chatModel.call(fullPrompt);
-
-            logger.info("Generated Response for uploaded PDF: {}", response);
-            return response;
-        } finally {
-            // Supprimer le fichier temporaire après utilisation
-            if (tempFile.exists()) {
-                tempFile.delete();
-            }
+        // Récupérer les documents similaires, uniquement parmi les chunks du PDF envoyé
+        List<Document> similarDocuments = retriever.retrieve(question, RetrievalFilter.document(documentId));
+        return callChatModel(buildPrompt(question, similarDocuments));
+    }
+
+    /**
+     * Variante en flux de {@link #processPdfAndAnswerQuestion} : le fichier est préparé pendant
+     * la requête, l'ingestion et la recherche se font une seule fois avant de streamer les tokens.
+     */
+    public Flux<String> streamPdfAnswer(MultipartFile file, String question) throws IOException {
+        PdfUploadStaging.StagedUpload upload = uploadStaging.stage(file);
+        return Mono.fromCallable(() -> {
+                    try (upload) {
+                        ingestDocument(upload, PdfIngestionPipeline.ProgressListener.NONE);
+                    }
+                    return buildPrompt(question,
+                            retriever.retrieve(question, RetrievalFilter.document(upload.contentHash())));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> upload.close())
+                .flatMapMany(chatModel::stream);
+    }
+
+    /**
+     * Ingère un PDF préparé sur disque, sauf s'il a déjà été ingéré
+     *
+     * @param upload   PDF préparé par {@link PdfUploadStaging}
+     * @param listener Suivi de l'avancement
+     */
+    public void ingestDocument(PdfUploadStaging.StagedUpload upload, PdfIngestionPipeline.ProgressListener listener)
+            throws IOException {
+        // Un PDF déjà ingéré passe directement à la recherche
+        if (ingestionRegistry.isIngested(upload.contentHash())) {
+            logger.info("PDF {} already ingested ({}), skipping parsing and embedding",
+                    upload.originalFilename(), upload.contentHash());
+            return;
+        }
+
+        // Ajouter des métadonnées communes à tous les chunks
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("source", PDF_SOURCE);
+        metadata.put("document_id", upload.contentHash());
+
+        // Extraction des pages en parallèle, découpage et sauvegarde dans le vectorStore
+        EmbeddingWriter.WriteResult result = ingestionPipeline.ingest(
+                upload.path(), upload.originalFilename(), metadata, listener);
+        logger.info("Loaded {} documents from uploaded PDF", result.stored());
+
+        // Les réponses en cache sans ticket ni version (ex. "Summarize the document") peuvent changer
+        if (result.stored() > 0) {
+            answerCache.invalidate(Set.of(AnswerCache.PDF_TAG));
+        }
+
+        // Ollama saturé : le refus (503 avec Retry-After) remonte tel quel jusqu'au contrôleur
+        if (result.overloaded() != null) {
+            throw result.overloaded();
         }
+
+        // Enregistrer l'empreinte seulement si tous les chunks sont stockés :
+        // un nouvel envoi complétera l'ingestion (les identifiants stables évitent les doublons)
+        if (result.hasFailures()) {
+            throw new IllegalStateException(result.failed() + " chunks of " + upload.originalFilename()
+                    + " could not be stored, please upload the file again");
+        }
+        ingestionRegistry.register(upload.contentHash(), upload.originalFilename(), result.stored());
+    }
+
+    /**
+     * Répond à une question en ne cherchant que dans les chunks d'un PDF déjà ingéré
+     *
+     * @param documentId Identifiant du document (empreinte SHA-256 du PDF)
+     * @param question   Question de l'utilisateur
+     */
+    public String answerQuestionForDocument(String documentId, String question) {
+        return callChatModel(buildDocumentPrompt(documentId, question));
+    }
+
+    public Flux<String> streamAnswerForDocument(String documentId, String question) {
+        return Mono.fromCallable(() -> buildDocumentPrompt(documentId, question))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(chatModel::stream);
+    }
+
+    private String buildDocumentPrompt(String documentId, String question) {
+        return buildPrompt(question, retriever.retrieve(question, RetrievalFilter.document(documentId)));
+    }
+
+    private String buildPrompt(String question, List<Document> similarDocuments) {
+        // Extraire le texte du document
+        String documentContext = contextAssembler.assemble(similarDocuments, this::extractDocumentText);
+
+        // Préparer la requête complète
+        return String.format(
+                "Your task is to answer questions about the uploaded document, using the following document context:\n\n" +
+                        "CONTEXT:\n%s\n\n" +
+                        "QUESTION:\n%s",
+                documentContext,
+                question
+        );
+    }
+
+    private String callChatModel(String fullPrompt) {
+        // Appeler le modèle de chat avec la requête complète
+        String response = chatModel.call(fullPrompt);
+
+        logger.info("Generated Response for uploaded PDF: {}", response);
+        return response;
     }
 
     private String extractDocumentText(Document document) {
@@ -112,13 +183,4 @@ class PdfService {
             return "Unable to extract document text";
         }
     }
-
-    private File convertMultiPartToFile(MultipartFile file) throws IOException {
-        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        File convFile = new File(System.getProperty("java.io.tmpdir"), fileName);
-        FileOutputStream fos = new FileOutputStream(convFile);
-        fos.write(file.getBytes());
-        fos.close();
-        return convFile;
-    }
 }
\ No newline at end of file
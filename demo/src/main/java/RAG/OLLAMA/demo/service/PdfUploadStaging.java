@@ -0,0 +1,163 @@
+package RAG.OLLAMA.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copie les PDF envoyés directement sur disque, sans passer par un byte[] en mémoire,
+ * et limite le volume total d'octets en cours de traitement.
+ */
+@Service
+public class PdfUploadStaging {
+    private static final Logger logger = LoggerFactory.getLogger(PdfUploadStaging.class);
+
+    // Le budget est compté en Kio pour tenir dans les permis (int) d'un Semaphore
+    private static final long PERMIT_UNIT = 1024;
+    private static final long MAX_MAPPED_REGION = 64L * 1024 * 1024;
+
+    private final Semaphore inFlightBudget;
+    private final int maxPermits;
+    private final Duration budgetWait;
+
+    public PdfUploadStaging(
+            @Value("${pdf.upload.max-in-flight-bytes:1GB}") DataSize maxInFlightBytes,
+            @Value("${pdf.upload.budget-wait:10s}") Duration budgetWait) {
+        this.maxPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxInFlightBytes.toBytes() / PERMIT_UNIT));
+        this.inFlightBudget = new Semaphore(maxPermits, true);
+        this.budgetWait = budgetWait;
+    }
+
+    /**
+     * Écrit le fichier envoyé dans un fichier temporaire et calcule son empreinte SHA-256
+     *
+     * @param file Fichier multipart reçu
+     * @return Fichier préparé, à fermer pour libérer le budget et supprimer le fichier
+     * @throws UploadBudgetExceededException si le budget n'est pas disponible après pdf.upload.budget-wait
+     */
+    public StagedUpload stage(MultipartFile file) throws IOException {
+        int permits = permitsFor(file.getSize());
+        try {
+            if (!inFlightBudget.tryAcquire(permits, budgetWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                // Les envois en cours libèrent le budget à leur rythme : réessayer après une attente comparable
+                throw new UploadBudgetExceededException("Too many uploads in progress, please retry later",
+                        budgetWait.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : budgetWait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for upload budget", e);
+        }
+
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("pdf-upload-", ".pdf");
+            // transferTo déplace ou copie la partie déjà stockée sur disque par le conteneur
+            file.transferTo(tempFile);
+            String contentHash = computeContentHash(tempFile);
+            logger.info("Staged upload {} ({} bytes) as {}", file.getOriginalFilename(), file.getSize(), tempFile);
+            return new StagedUpload(this, tempFile, file.getOriginalFilename(), contentHash, permits);
+        } catch (IOException | RuntimeException e) {
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
+            }
+            inFlightBudget.release(permits);
+            throw e;
+        }
+    }
+
+    private int permitsFor(long size) {
+        long permits = (size + PERMIT_UNIT - 1) / PERMIT_UNIT;
+        // Un fichier plus gros que le budget total le réserve entièrement
+        return (int) Math.max(1, Math.min(maxPermits, permits));
+    }
+
+    private String computeContentHash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        // Lecture par régions mappées en mémoire : pas de copie dans le tas
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAX_MAPPED_REGION) {
+                long length = Math.min(MAX_MAPPED_REGION, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                digest.update(region);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    void release(StagedUpload upload) {
+        try {
+            Files.deleteIfExists(upload.path());
+        } catch (IOException e) {
+            logger.warn("Could not delete staged upload {}", upload.path(), e);
+        } finally {
+            inFlightBudget.release(upload.permits());
+        }
+    }
+
+    /**
+     * PDF écrit sur disque ; la fermeture supprime le fichier et rend sa part du budget.
+     */
+    public static final class StagedUpload implements AutoCloseable {
+        private final PdfUploadStaging owner;
+        private final Path path;
+        private final String originalFilename;
+        private final String contentHash;
+        private final int permits;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private StagedUpload(PdfUploadStaging owner, Path path, String originalFilename, String contentHash, int permits) {
+            this.owner = owner;
+            this.path = path;
+            this.originalFilename = originalFilename;
+            this.contentHash = contentHash;
+            this.permits = permits;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public String originalFilename() {
+            return originalFilename;
+        }
+
+        public String contentHash() {
+            return contentHash;
+        }
+
+        int permits() {
+            return permits;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                owner.release(this);
+            }
+        }
+    }
+}
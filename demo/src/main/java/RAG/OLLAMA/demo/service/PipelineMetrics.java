@@ -0,0 +1,115 @@
+package RAG.OLLAMA.demo.service;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Mesures des étapes du pipeline RAG. Chaque étape est une Observation "rag.stage" (tag stage) :
+ * un timer exposé par Actuator/Prometheus et un span, qui porte le trace id de la requête
+ * d'origine jusque dans les threads des pools (voir {@link #propagating(ExecutorService)}).
+ * <p>
+ * Étapes : pdf.parse, pdf.split, embed, vector.insert, retrieval.vector, retrieval.lexical,
+ * jira.detection, generation. Les appels Jira sont mesurés par {@link JiraCallGuard}.
+ */
+@Service
+public class PipelineMetrics {
+    public static final String STAGE_OBSERVATION = "rag.stage";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ContextSnapshotFactory snapshotFactory = ContextSnapshotFactory.builder().build();
+
+    public PipelineMetrics(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T observe(String stage, Supplier<T> work) {
+        return stage(stage).observe(work);
+    }
+
+    public void observe(String stage, Runnable work) {
+        stage(stage).observe(work);
+    }
+
+    public <T, E extends Throwable> T observeChecked(String stage, Observation.CheckedCallable<T, E> work) throws E {
+        return stage(stage).observeChecked(work);
+    }
+
+    /**
+     * Observation démarrée par l'appelant, pour une étape qui se termine plus tard (flux de tokens)
+     */
+    public Observation stage(String stage) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+                .contextualName(stage)
+                .lowCardinalityKeyValue("stage", stage);
+    }
+
+    public Observation observation(String name) {
+        return Observation.createNotStarted(name, observationRegistry);
+    }
+
+    /**
+     * @param tags Paires clé, valeur
+     */
+    public Counter counter(String name, String... tags) {
+        return Counter.builder(name).tags(tags).register(meterRegistry);
+    }
+
+    /**
+     * @param tags Paires clé, valeur
+     */
+    public Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).register(meterRegistry);
+    }
+
+    /**
+     * @param tags Paires clé, valeur
+     */
+    public void gauge(String name, Supplier<Number> value, String... tags) {
+        Gauge.builder(name, value).tags(tags).register(meterRegistry);
+    }
+
+    /**
+     * Débit de génération d'Ollama (prompt-eval-count / prompt-eval-duration, eval-count / eval-duration)
+     */
+    public void recordGeneration(ChatResponseMetadata metadata) {
+        if (metadata == null) {
+            return;
+        }
+        recordThroughput("prompt", metadata.get("prompt-eval-count"), metadata.get("prompt-eval-duration"));
+        recordThroughput("completion", metadata.get("eval-count"), metadata.get("eval-duration"));
+    }
+
+    private void recordThroughput(String type, Object count, Object duration) {
+        if (!(count instanceof Number tokens) || !(duration instanceof Duration elapsed) || elapsed.isZero()) {
+            return;
+        }
+        Counter.builder("llm.tokens").tag("type", type).register(meterRegistry).increment(tokens.doubleValue());
+        DistributionSummary.builder("llm.tokens.per.second")
+                .tag("type", type)
+                .baseUnit("tokens")
+                .register(meterRegistry)
+                .record(tokens.doubleValue() * 1e9 / elapsed.toNanos());
+    }
+
+    /**
+     * @return Pool dont les tâches gardent l'observation (et donc le trace id) de l'appelant
+     */
+    public ExecutorService propagating(ExecutorService executor) {
+        return ContextExecutorService.wrap(executor, snapshotFactory);
+    }
+}
@@ -0,0 +1,81 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Périmètre d'une recherche, traduit en filtre sur les métadonnées des chunks et appliqué
+ * dans la requête SQL (recherche vectorielle et plein texte) :
+ * document_id ET (ticket_key/issue_key parmi les tickets OU version_id parmi les versions).
+ * Un critère null ou vide n'est pas appliqué.
+ *
+ * @param documentId Identifiant du document (empreinte SHA-256 pour un PDF)
+ * @param tickets    Clés de tickets Jira
+ * @param versions   Identifiants ou noms de versions Jira
+ */
+public record RetrievalFilter(String documentId, List<String> tickets, List<String> versions) {
+
+    public static final RetrievalFilter NONE = new RetrievalFilter(null, List.of(), List.of());
+
+    public RetrievalFilter {
+        tickets = tickets != null ? List.copyOf(tickets) : List.of();
+        versions = versions != null ? List.copyOf(versions) : List.of();
+    }
+
+    public static RetrievalFilter document(String documentId) {
+        return new RetrievalFilter(documentId, List.of(), List.of());
+    }
+
+    public static RetrievalFilter identifiers(List<String> versions, List<String> tickets) {
+        return new RetrievalFilter(null, tickets, versions);
+    }
+
+    public boolean isEmpty() {
+        return documentId == null && tickets.isEmpty() && versions.isEmpty();
+    }
+
+    /**
+     * @return Expression de filtre Spring AI, ou null si aucun critère
+     */
+    public Filter.Expression toExpression() {
+        FilterExpressionBuilder builder = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> clauses = new ArrayList<>();
+        if (documentId != null) {
+            clauses.add(builder.eq("document_id", documentId));
+        }
+
+        List<FilterExpressionBuilder.Op> identifiers = new ArrayList<>();
+        if (!tickets.isEmpty()) {
+            identifiers.add(builder.in("ticket_key", new ArrayList<>(tickets)));
+            identifiers.add(builder.in("issue_key", new ArrayList<>(tickets)));
+        }
+        if (!versions.isEmpty()) {
+            identifiers.add(builder.in("version_id", new ArrayList<>(versions)));
+        }
+        if (!identifiers.isEmpty()) {
+            FilterExpressionBuilder.Op anyIdentifier = identifiers.get(0);
+            for (int i = 1; i < identifiers.size(); i++) {
+                anyIdentifier = builder.or(anyIdentifier, identifiers.get(i));
+            }
+            clauses.add(identifiers.size() > 1 ? builder.group(anyIdentifier) : anyIdentifier);
+        }
+
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        FilterExpressionBuilder.Op filter = clauses.get(0);
+        for (int i = 1; i < clauses.size(); i++) {
+            filter = builder.and(filter, clauses.get(i));
+        }
+        return filter.build();
+    }
+
+    @Override
+    public String toString() {
+        Filter.Expression expression = toExpression();
+        return expression != null ? expression.toString() : "none";
+    }
+}
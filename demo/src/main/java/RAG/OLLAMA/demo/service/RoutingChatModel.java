@@ -0,0 +1,36 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * Modèle de chat qui répartit les générations entre les serveurs de son {@link OllamaPool}
+ */
+public class RoutingChatModel implements ChatModel {
+
+    private final OllamaPool<ChatModel> pool;
+    private final ChatOptions defaultOptions;
+
+    public RoutingChatModel(OllamaPool<ChatModel> pool, ChatOptions defaultOptions) {
+        this.pool = pool;
+        this.defaultOptions = defaultOptions;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return pool.call(model -> model.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return pool.stream(model -> model.stream(prompt));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return defaultOptions;
+    }
+}
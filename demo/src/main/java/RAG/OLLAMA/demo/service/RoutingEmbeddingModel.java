@@ -0,0 +1,28 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Modèle d'embedding qui répartit les lots entre les serveurs de son {@link OllamaPool}
+ */
+public class RoutingEmbeddingModel implements EmbeddingModel {
+
+    private final OllamaPool<EmbeddingModel> pool;
+
+    public RoutingEmbeddingModel(OllamaPool<EmbeddingModel> pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return pool.call(model -> model.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+}
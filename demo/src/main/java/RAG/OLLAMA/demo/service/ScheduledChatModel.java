@@ -0,0 +1,46 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Modèle de chat dont chaque génération attend sa place auprès du {@link LlmScheduler}.
+ * En streaming, la place est gardée jusqu'au dernier token (ou à l'annulation du flux).
+ */
+public class ScheduledChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmScheduler scheduler;
+
+    public ScheduledChatModel(ChatModel delegate, LlmScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return scheduler.call(LlmScheduler.CallType.CHAT, () -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        LlmScheduler.Priority priority = LlmScheduler.currentPriority();
+        return Flux.defer(() -> {
+            CompletableFuture<LlmScheduler.Permit> admission = scheduler.admit(priority, LlmScheduler.CallType.CHAT);
+            return Mono.fromFuture(admission, true)
+                    .flatMapMany(permit -> delegate.stream(prompt).doFinally(signal -> permit.release()))
+                    .doOnCancel(() -> LlmScheduler.abandon(admission));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -0,0 +1,36 @@
+package RAG.OLLAMA.demo.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Modèle d'embedding dont chaque appel attend sa place auprès du {@link LlmScheduler},
+ * comme les générations : l'ingestion en arrière-plan cède le pas aux questions.
+ */
+public class ScheduledEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final LlmScheduler scheduler;
+
+    public ScheduledEmbeddingModel(EmbeddingModel delegate, LlmScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return scheduler.call(LlmScheduler.CallType.EMBEDDING, () -> delegate.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
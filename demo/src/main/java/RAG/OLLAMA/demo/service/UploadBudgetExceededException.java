@@ -0,0 +1,24 @@
+package RAG.OLLAMA.demo.service;
+
+import java.time.Duration;
+
+/**
+ * Envoi de PDF refusé par {@link PdfUploadStaging} : le volume d'octets en cours de traitement
+ * est au maximum depuis trop longtemps (à réessayer plus tard).
+ */
+public class UploadBudgetExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * @param retryAfter Attente suggérée avant un nouvel envoi (en-tête Retry-After)
+     */
+    public UploadBudgetExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
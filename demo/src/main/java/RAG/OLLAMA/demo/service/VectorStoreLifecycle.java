@@ -0,0 +1,234 @@
+package RAG.OLLAMA.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgDistanceType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Maintenance de la table du VectorStore, en arrière-plan après le démarrage (le schéma
+ * lui-même est créé par les migrations Flyway) :
+ * <ul>
+ *     <li>ré-embedding de tous les chunks quand le modèle d'embedding ou les dimensions
+ *     configurés ne sont plus ceux des vecteurs stockés ; l'avancement est enregistré dans
+ *     vector_store_state et reprend après un redémarrage</li>
+ *     <li>création de l'index HNSW, ou reconstruction en ligne (CREATE INDEX CONCURRENTLY) quand
+ *     vector-store.hnsw.m, vector-store.hnsw.ef-construction ou la distance ont changé</li>
+ * </ul>
+ * hnsw.ef_search et hnsw.iterative_scan sont des options de session, positionnées sur chaque connexion
+ * du pool : avec le parcours itératif, une recherche filtrée rend encore ses k chunks quand peu de
+ * voisins de l'index passent le filtre.
+ */
+@Service
+public class VectorStoreLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(VectorStoreLifecycle.class);
+
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    // Valeurs par défaut de pgvector quand l'index n'a pas d'options
+    private static final int DEFAULT_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final String tableName;
+    private final String indexName;
+    private final String embeddingModelName;
+    private final int dimensions;
+    private final PgDistanceType distanceType;
+    private final int m;
+    private final int efConstruction;
+    private final int reembedBatchSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vector-store-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public VectorStoreLifecycle(
+            JdbcTemplate jdbcTemplate,
+            EmbeddingModel embeddingModel,
+            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName,
+            @Value("${spring.ai.ollama.embedding.model}") String embeddingModelName,
+            @Value("${spring.ai.vectorstore.pgvector.dimensions}") int dimensions,
+            @Value("${spring.ai.vectorstore.pgvector.distance-type:cosine_distance}") String distanceType,
+            @Value("${vector-store.hnsw.m:16}") int m,
+            @Value("${vector-store.hnsw.ef-construction:64}") int efConstruction,
+            @Value("${vector-store.reembed.batch-size:32}") int reembedBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingModel = embeddingModel;
+        this.tableName = tableName;
+        // Même nom que l'index créé par PgVectorStore, pour reprendre une base existante
+        this.indexName = tableName.equals("vector_store") ? "spring_ai_vector_index" : tableName + "_index";
+        this.embeddingModelName = embeddingModelName;
+        this.dimensions = dimensions;
+        this.distanceType = PgDistanceType.valueOf(distanceType.toUpperCase(Locale.ROOT));
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.reembedBatchSize = reembedBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Sans bloquer le démarrage : la recherche fonctionne pendant la maintenance
+        executor.submit(() -> LlmScheduler.withPriority(LlmScheduler.Priority.BACKGROUND, () -> {
+            try {
+                checkEmbeddingModel();
+                ensureIndex();
+            } catch (Exception e) {
+                logger.error("Vector store maintenance failed", e);
+            }
+        }));
+    }
+
+    /**
+     * Lance ou reprend le ré-embedding si les vecteurs stockés ne viennent pas du modèle configuré
+     */
+    private void checkEmbeddingModel() {
+        List<Map<String, Object>> states = jdbcTemplate.queryForList(
+                "SELECT embedding_model, dimensions, reembed_cursor FROM vector_store_state");
+        if (states.isEmpty()) {
+            // Première exécution : les vecteurs existants viennent du modèle configuré
+            jdbcTemplate.update("INSERT INTO vector_store_state (embedding_model, dimensions) VALUES (?, ?)",
+                    embeddingModelName, dimensions);
+            return;
+        }
+
+        Map<String, Object> state = states.get(0);
+        String storedModel = (String) state.get("embedding_model");
+        int storedDimensions = ((Number) state.get("dimensions")).intValue();
+        UUID cursor = (UUID) state.get("reembed_cursor");
+
+        if (!storedModel.equals(embeddingModelName) || storedDimensions != dimensions) {
+            logger.warn("Embedding model changed from {} ({} dimensions) to {} ({} dimensions), re-embedding {}",
+                    storedModel, storedDimensions, embeddingModelName, dimensions, tableName);
+            if (storedDimensions != dimensions) {
+                // Les anciens vecteurs ne peuvent pas être convertis, l'index est recréé après le ré-embedding
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                jdbcTemplate.execute("ALTER TABLE " + tableName + " ALTER COLUMN embedding TYPE vector("
+                        + dimensions + ") USING NULL");
+            }
+            cursor = FIRST_ID;
+            jdbcTemplate.update("UPDATE vector_store_state SET embedding_model = ?, dimensions = ?, "
+                    + "reembed_cursor = ?, updated_at = now()", embeddingModelName, dimensions, cursor);
+        }
+
+        if (cursor != null) {
+            reembed(cursor);
+        }
+    }
+
+    /**
+     * Recalcule les embeddings par lots, dans l'ordre des identifiants
+     *
+     * @param from Dernier identifiant déjà traité
+     */
+    private void reembed(UUID from) {
+        logger.info("Re-embedding {} with {} from id {}", tableName, embeddingModelName, from);
+        UUID cursor = from;
+        int total = 0;
+        while (true) {
+            List<UUID> ids = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            jdbcTemplate.query(
+                    "SELECT id, content FROM " + tableName + " WHERE id > ? ORDER BY id LIMIT ?",
+                    rs -> {
+                        ids.add(rs.getObject("id", UUID.class));
+                        texts.add(rs.getString("content") != null ? rs.getString("content") : "");
+                    },
+                    cursor, reembedBatchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            List<float[]> embeddings = embeddingModel.embed(texts);
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                rows.add(new Object[]{Arrays.toString(embeddings.get(i)), ids.get(i)});
+            }
+            jdbcTemplate.batchUpdate("UPDATE " + tableName + " SET embedding = ?::vector WHERE id = ?", rows);
+
+            cursor = ids.get(ids.size() - 1);
+            total += ids.size();
+            jdbcTemplate.update("UPDATE vector_store_state SET reembed_cursor = ?, updated_at = now()", cursor);
+            logger.info("Re-embedded {} chunks", total);
+        }
+        jdbcTemplate.update("UPDATE vector_store_state SET reembed_cursor = NULL, updated_at = now()");
+        logger.info("Re-embedding of {} finished: {} chunks", tableName, total);
+    }
+
+    /**
+     * Crée l'index HNSW, ou le reconstruit sans bloquer les écritures si ses paramètres ont changé
+     */
+    private void ensureIndex() {
+        String rebuildName = indexName + "_rebuild";
+        // Reste d'une reconstruction interrompue (index invalide)
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + rebuildName);
+
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(
+                "SELECT pg_get_indexdef(c.oid) AS definition, array_to_string(c.reloptions, ',') AS options "
+                        + "FROM pg_class c WHERE c.relkind = 'i' AND c.relname = ?",
+                indexName);
+        if (indexes.isEmpty()) {
+            logger.info("Creating HNSW index {} (m = {}, ef_construction = {})", indexName, m, efConstruction);
+            jdbcTemplate.execute(createIndexSql(indexName));
+            return;
+        }
+
+        String definition = (String) indexes.get(0).get("definition");
+        Map<String, String> options = parseOptions((String) indexes.get(0).get("options"));
+        int currentM = Integer.parseInt(options.getOrDefault("m", String.valueOf(DEFAULT_M)));
+        int currentEfConstruction = Integer.parseInt(
+                options.getOrDefault("ef_construction", String.valueOf(DEFAULT_EF_CONSTRUCTION)));
+        if (definition.contains("hnsw") && definition.contains(distanceType.index)
+                && currentM == m && currentEfConstruction == efConstruction) {
+            return;
+        }
+
+        logger.info("Rebuilding index {} ({}) with m = {}, ef_construction = {}", indexName, definition, m,
+                efConstruction);
+        jdbcTemplate.execute(createIndexSql(rebuildName));
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + indexName);
+        jdbcTemplate.execute("ALTER INDEX " + rebuildName + " RENAME TO " + indexName);
+        logger.info("Index {} rebuilt", indexName);
+    }
+
+    private String createIndexSql(String name) {
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + tableName + " USING hnsw (embedding "
+                + distanceType.index + ") WITH (m = " + m + ", ef_construction = " + efConstruction + ")";
+    }
+
+    private static Map<String, String> parseOptions(String options) {
+        Map<String, String> parsed = new HashMap<>();
+        if (options != null) {
+            for (String option : options.split(",")) {
+                String[] parts = option.split("=", 2);
+                if (parts.length == 2) {
+                    parsed.put(parts[0].trim(), parts[1].trim());
+                }
+            }
+        }
+        return parsed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
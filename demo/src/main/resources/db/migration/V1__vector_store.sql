@@ -0,0 +1,21 @@
+-- Table du VectorStore (même structure que celle créée par PgVectorStore avec initialize-schema)
+CREATE EXTENSION IF NOT EXISTS vector;
+CREATE EXTENSION IF NOT EXISTS hstore;
+CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
+
+CREATE TABLE IF NOT EXISTS ${vector_table} (
+    id UUID DEFAULT uuid_generate_v4() PRIMARY KEY,
+    content TEXT,
+    metadata JSON,
+    embedding VECTOR(${vector_dimensions})
+);
+
+-- Recherche plein texte (index d'expression, PgVectorStore reste seul à écrire dans la table)
+CREATE INDEX IF NOT EXISTS ${vector_table}_content_fts_idx ON ${vector_table}
+    USING gin (to_tsvector('simple', content));
+
+-- Filtres de métadonnées (metadata::jsonb @@ jsonpath)
+CREATE INDEX IF NOT EXISTS ${vector_table}_metadata_idx ON ${vector_table}
+    USING gin ((metadata::jsonb) jsonb_path_ops);
+
+-- L'index HNSW est géré par VectorStoreLifecycle (paramètres configurables, reconstruit en ligne)
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS jira_index_owner (
+    owner TEXT PRIMARY KEY,
+    synced_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS jira_index_document (
+    document_id UUID PRIMARY KEY,
+    owner TEXT NOT NULL,
+    fingerprint CHAR(64) NOT NULL,
+    source_updated_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS jira_index_document_owner_idx ON jira_index_document (owner);
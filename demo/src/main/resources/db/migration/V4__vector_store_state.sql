@@ -0,0 +1,8 @@
+-- Modèle et dimensions des embeddings stockés ; reembed_cursor est renseigné pendant un ré-embedding
+CREATE TABLE IF NOT EXISTS vector_store_state (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    embedding_model TEXT NOT NULL,
+    dimensions INT NOT NULL,
+    reembed_cursor UUID,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
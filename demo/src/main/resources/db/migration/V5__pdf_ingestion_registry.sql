@@ -0,0 +1,7 @@
+-- PDF déjà ingérés, par empreinte SHA-256 du contenu (table créée auparavant par PdfIngestionRegistry)
+CREATE TABLE IF NOT EXISTS pdf_ingestion_registry (
+    content_hash CHAR(64) PRIMARY KEY,
+    file_name TEXT,
+    chunk_count INTEGER NOT NULL,
+    ingested_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,2 @@
+-- Date de mise à jour Jira jamais relue : la détection des changements repose sur les empreintes
+ALTER TABLE jira_index_document DROP COLUMN IF EXISTS source_updated_at;
@@ -0,0 +1,4 @@
+-- Propriétaire dont la dernière synchronisation a échoué ou est incomplète : repris par la
+-- resynchronisation de fond ; synced_at reste la date de la dernière synchronisation complète
+ALTER TABLE jira_index_owner ALTER COLUMN synced_at DROP NOT NULL;
+ALTER TABLE jira_index_owner ADD COLUMN IF NOT EXISTS pending BOOLEAN NOT NULL DEFAULT false;